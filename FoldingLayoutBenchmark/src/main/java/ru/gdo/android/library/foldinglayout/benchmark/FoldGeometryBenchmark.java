@@ -0,0 +1,122 @@
+package ru.gdo.android.library.foldinglayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.gdo.android.library.foldinglayout.FoldGeometry;
+import ru.gdo.android.library.foldinglayout.FoldKeyframes;
+
+/**
+ * Measures the work FoldingLayout.calculateMatrices does on every layout
+ * pass of an animation: cutting the layout and the content into strips,
+ * computing the fold geometry and the alpha of the shading.
+ *
+ * Every invocation is the next frame of a fold over the whole range of
+ * fold factors. For the exact geometry the layout shrinks with the fold
+ * factor the way it does in a weight animation, so the size changes on
+ * every frame.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoldGeometryBenchmark {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+
+    private static final float SHADING_ALPHA = 0.8f;
+
+    /**
+     * Frames of the simulated fold, 750 ms at 60 Hz.
+     */
+    private static final int FRAMES = 45;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int folds;
+
+    @Param({"true", "false"})
+    public boolean horizontal;
+
+    @Param({"0", "0.5", "1"})
+    public float anchorFactor;
+
+    private final FoldGeometry mGeometry = new FoldGeometry();
+    private final float[] mDrawSize = new float[2];
+    private FoldKeyframes mKeyframes;
+    private int[] mStrips;
+    private float[] mQuads;
+    private float[] mMatrices;
+
+    private int mFrame = 0;
+    private float mFoldFactor;
+    private int mWidth;
+    private int mHeight;
+
+    @Setup
+    public void setup() {
+        mStrips = new int[folds * FoldGeometry.STRIP_SIZE];
+        mQuads = new float[folds * FoldGeometry.QUAD_SIZE];
+        mMatrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        mKeyframes = new FoldKeyframes(64, WIDTH, HEIGHT, folds, anchorFactor, horizontal);
+    }
+
+    /*
+     * Moves on to the next frame strictly between the unfolded and the
+     * collapsed state, which the layout does not compute.
+     */
+    private void nextFrame() {
+        mFrame = mFrame % (FRAMES - 1) + 1;
+        mFoldFactor = mFrame / (float) FRAMES;
+        int extent = Math.round(mFoldFactor * (horizontal ? WIDTH : HEIGHT));
+        mWidth = horizontal ? extent : WIDTH;
+        mHeight = horizontal ? HEIGHT : extent;
+    }
+
+    @Benchmark
+    public float[] geometry() {
+        nextFrame();
+        FoldGeometry.segment(mWidth, mHeight, folds, horizontal, mStrips);
+        mGeometry.compute(mWidth, mHeight, folds, anchorFactor, horizontal, mFoldFactor,
+                mQuads, mMatrices);
+        return mMatrices;
+    }
+
+    /**
+     * The geometry interpolated from keyframes, which were built in the
+     * setup. The table is only used while the layout keeps its size, so
+     * this fold keeps the unfolded size on every frame, and the strips of
+     * that size are shared with the table instead of being cut again.
+     */
+    @Benchmark
+    public float[] keyframes() {
+        nextFrame();
+        mKeyframes.compute(mGeometry, WIDTH, HEIGHT, mFoldFactor, mQuads, mMatrices, mDrawSize);
+        return mMatrices;
+    }
+
+    @Benchmark
+    public int shading() {
+        nextFrame();
+        return FoldGeometry.shadingAlpha(mFoldFactor, SHADING_ALPHA);
+    }
+
+}
@@ -0,0 +1,57 @@
+package ru.gdo.android.library.foldinglayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.gdo.android.library.foldinglayout.FoldSpring;
+
+/**
+ * Measures one frame of a spring driven fold for a bouncing, a critically
+ * damped and a creeping spring. The target is flipped on every frame, like
+ * a fold that keeps being turned around.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoldSpringBenchmark {
+
+    private static final float FRAME_SECONDS = 1 / 120f;
+
+    @Param({"0.5", "1", "2"})
+    public float dampingRatio;
+
+    private FoldSpring mSpring;
+
+    @Setup
+    public void setup() {
+        mSpring = new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, dampingRatio);
+        mSpring.setState(0, 0);
+    }
+
+    @Benchmark
+    public float step() {
+        mSpring.setTarget(mSpring.getTarget() == 1 ? 0 : 1);
+        mSpring.step(FRAME_SECONDS);
+        return mSpring.getValue();
+    }
+
+}
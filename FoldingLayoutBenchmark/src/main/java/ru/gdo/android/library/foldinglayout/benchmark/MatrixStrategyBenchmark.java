@@ -0,0 +1,97 @@
+package ru.gdo.android.library.foldinglayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.gdo.android.library.foldinglayout.FoldGeometry;
+import ru.gdo.android.library.foldinglayout.PerspectiveSolver;
+
+/**
+ * Compares the ways to turn the quads of the folds into perspective
+ * matrices. The quads are computed once, so only the matrices are measured.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixStrategyBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int folds;
+
+    @Param({"true", "false"})
+    public boolean horizontal;
+
+    private final FoldGeometry mGeometry = new FoldGeometry();
+    private final PerspectiveSolver mSolver = new PerspectiveSolver();
+    private float[] mQuads;
+    private float[] mMatrices;
+    private float mWidth;
+    private float mHeight;
+
+    @Setup
+    public void setup() {
+        mQuads = new float[folds * FoldGeometry.QUAD_SIZE];
+        mMatrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        mGeometry.compute(FoldGeometryBenchmark.WIDTH, FoldGeometryBenchmark.HEIGHT, folds,
+                0, horizontal, 0.5f, mQuads, mMatrices);
+        mWidth = mGeometry.getFoldDrawWidth();
+        mHeight = mGeometry.getFoldDrawHeight();
+    }
+
+    /**
+     * The closed form used by FoldGeometry.
+     */
+    @Benchmark
+    public float[] trapezoid() {
+        for (int x = 0; x < folds; x++) {
+            FoldGeometry.trapezoidToMatrix(mWidth, mHeight, horizontal,
+                    mQuads, x * FoldGeometry.QUAD_SIZE,
+                    mMatrices, x * FoldGeometry.MATRIX_SIZE);
+        }
+        return mMatrices;
+    }
+
+    /**
+     * The solution for any quad.
+     */
+    @Benchmark
+    public float[] rectToQuad() {
+        for (int x = 0; x < folds; x++) {
+            FoldGeometry.rectToQuad(mWidth, mHeight, mQuads, x * FoldGeometry.QUAD_SIZE,
+                    mMatrices, x * FoldGeometry.MATRIX_SIZE);
+        }
+        return mMatrices;
+    }
+
+    /**
+     * The general solve of four point pairs, as done by setPolyToPoly.
+     */
+    @Benchmark
+    public float[] generalSolve() {
+        for (int x = 0; x < folds; x++) {
+            mSolver.solve(mWidth, mHeight, mQuads, x * FoldGeometry.QUAD_SIZE,
+                    mMatrices, x * FoldGeometry.MATRIX_SIZE);
+        }
+        return mMatrices;
+    }
+
+}
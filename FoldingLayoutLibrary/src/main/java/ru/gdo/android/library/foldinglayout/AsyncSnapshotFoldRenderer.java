@@ -0,0 +1,281 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Snapshot renderer that keeps the rasterization of the content off the UI
+ * thread. The content is only recorded into a Picture on the UI thread,
+ * which is cheap, and the recording is drawn into a pooled bitmap on a
+ * worker thread. The folds are drawn live until the first bitmap is ready.
+ *
+ * Two bitmaps are used in turn. The folds keep drawing the last complete
+ * one while the other is brought up to date, so a change of the content
+ * only records and rasterizes its dirty rectangle, together with the part
+ * the other bitmap missed while it was shown.
+ *
+ * A bitmap that was drawn may still be referenced by the display list of
+ * the last frame, so it is neither written again nor given back to the pool
+ * before the next frame has been drawn.
+ *
+ * Must only be used on the UI thread, apart from the worker it starts.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class AsyncSnapshotFoldRenderer extends SnapshotFoldRenderer {
+
+    private static Executor sExecutor;
+    private static Handler sMainHandler;
+
+    private final LiveFoldRenderer mLiveRenderer = new LiveFoldRenderer();
+
+    private FoldBitmapPool mPool;
+
+    /**
+     * Bitmap the folds are drawn from, and the frame it was last drawn in.
+     */
+    private Bitmap mFrontBitmap;
+    private int mFrontFrame;
+
+    /**
+     * Bitmap that is brought up to date next, and the part of it that
+     * differs from the front bitmap.
+     */
+    private Bitmap mBackBitmap;
+    private int mBackFrame;
+    private final Rect mBackDirtyRect = new Rect();
+
+    /**
+     * Part of the content that changed since it was last recorded.
+     */
+    private final Rect mDirtyRect = new Rect();
+
+    private int mFrame = 0;
+    private int mGeneration = 0;
+    private boolean mIsPending = false;
+
+    private final FoldBitmapRetirer mRetirer = new FoldBitmapRetirer();
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FoldSnapshot");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sExecutor;
+    }
+
+    @Override
+    public void onFoldPrepare(FoldingLayout layout) {
+        if (mFrontBitmap == null && !mIsPending) {
+            startRasterization(layout);
+        }
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+        super.onFoldEnd(layout);
+        discardBitmaps();
+    }
+
+    @Override
+    public boolean hasCapturedContent() {
+        return mFrontBitmap != null || mIsPending || super.hasCapturedContent();
+    }
+
+    @Override
+    public void onContentInvalidated(FoldingLayout layout, Rect dirty) {
+        super.onContentInvalidated(layout, dirty);
+        if (mFrontBitmap == null && !mIsPending) {
+            return;
+        }
+        View content = layout.getChildAt(0);
+        if (dirty == null || content == null) {
+            mDirtyRect.set(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } else {
+            mDirtyRect.union(dirty);
+        }
+        layout.invalidate();
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        mFrame++;
+        View content = layout.getChildAt(0);
+        if (mFrontBitmap != null && content != null
+                && (mFrontBitmap.getWidth() != content.getWidth()
+                || mFrontBitmap.getHeight() != content.getHeight())) {
+            discardBitmaps();
+        }
+
+        if (!mIsPending && (mFrontBitmap == null || !mDirtyRect.isEmpty())) {
+            if (mBackBitmap != null && mFrame < mBackFrame + FoldBitmapRetirer.RETIRE_FRAMES) {
+                // the back bitmap is still in use by the last frame
+                layout.postInvalidateOnAnimation();
+            } else if (!startRasterization(layout) && mFrontBitmap == null) {
+                return super.draw(layout, canvas);
+            }
+        }
+
+        if (mFrontBitmap != null) {
+            drawFolds(layout, canvas, mFrontBitmap, 0);
+            mFrontFrame = mFrame;
+            return true;
+        }
+
+        /*
+         * Android 4.3 cannot draw the folds live on a hardware canvas, so the
+         * snapshot is taken on the UI thread there while the worker is busy.
+         */
+        if (!mLiveRenderer.isSupported(canvas)) {
+            return super.draw(layout, canvas);
+        }
+        return mLiveRenderer.draw(layout, canvas);
+    }
+
+    /**
+     * Records the part of the content the back bitmap misses and hands the
+     * recording over to the worker thread. Without a back bitmap the whole
+     * content is recorded into a new one.
+     *
+     * @return false if the content has no size yet.
+     */
+    private boolean startRasterization(final FoldingLayout layout) {
+        View content = layout.getChildAt(0);
+        if (content == null || content.getWidth() <= 0 || content.getHeight() <= 0) {
+            return false;
+        }
+        if (mPool == null) {
+            mPool = FoldBitmapPool.getInstance(layout.getContext());
+        }
+
+        final int width = content.getWidth();
+        final int height = content.getHeight();
+        final Bitmap target = mFrontBitmap != null ? mBackBitmap : null;
+        final Rect region = new Rect(0, 0, width, height);
+        if (target != null) {
+            region.set(mBackDirtyRect);
+            region.union(mDirtyRect);
+            if (!region.intersect(0, 0, width, height)) {
+                region.setEmpty();
+            }
+        }
+
+        /*
+         * What changed up to now is recorded, so the front bitmap will only
+         * miss this part once the new bitmap takes its place.
+         */
+        final Rect changed = new Rect(mDirtyRect);
+        mDirtyRect.setEmpty();
+        mBackBitmap = null;
+
+        final Picture picture = new Picture();
+        Canvas recordingCanvas = picture.beginRecording(width, height);
+        recordingCanvas.clipRect(region);
+        recordingCanvas.translate(-content.getScrollX(), -content.getScrollY());
+        content.draw(recordingCanvas);
+        picture.endRecording();
+
+        final int generation = mGeneration;
+        final FoldBitmapPool pool = mPool;
+        mIsPending = true;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = target;
+                if (bitmap == null) {
+                    try {
+                        bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+                    } catch (OutOfMemoryError e) {
+                        bitmap = null;
+                    }
+                }
+                if (bitmap != null) {
+                    Canvas canvas = new Canvas(bitmap);
+                    canvas.clipRect(region);
+                    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                    picture.draw(canvas);
+                }
+
+                final Bitmap result = bitmap;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(layout, generation, result, changed);
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Shows a finished bitmap. The bitmap is only shown if the content has
+     * not been discarded since it was recorded, and the previous front
+     * bitmap becomes the back bitmap.
+     */
+    private void publish(FoldingLayout layout, int generation, Bitmap bitmap, Rect changed) {
+        if (generation != mGeneration) {
+            // never drawn, so it can go back right away
+            if (bitmap != null) {
+                mPool.put(bitmap);
+            }
+            return;
+        }
+        mIsPending = false;
+        if (bitmap == null) {
+            mDirtyRect.set(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            return;
+        }
+        if (mFrontBitmap != null) {
+            mBackBitmap = mFrontBitmap;
+            mBackFrame = mFrontFrame;
+            mBackDirtyRect.set(changed);
+        }
+        mFrontBitmap = bitmap;
+        layout.invalidate();
+    }
+
+    /**
+     * Starts a new generation and gives both bitmaps back to the pool once
+     * the last frame that may draw them is done.
+     */
+    private void discardBitmaps() {
+        mGeneration++;
+        mIsPending = false;
+        mDirtyRect.setEmpty();
+        mBackDirtyRect.setEmpty();
+        mRetirer.retire(mPool, mFrontBitmap);
+        mRetirer.retire(mPool, mBackBitmap);
+        mFrontBitmap = null;
+        mBackBitmap = null;
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        discardBitmaps();
+    }
+
+}
@@ -0,0 +1,170 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldRenderer;
+
+/**
+ * Chooses a renderer at draw time from what the canvas and the content
+ * support:
+ *
+ * - content with a TextureView or a SurfaceView changes on its own and
+ * cannot be captured, so it is drawn live;
+ * - content without a stable unfolded size would have to be captured on
+ * every frame, so it is drawn live as well;
+ * - otherwise a hardware canvas draws the snapshot and a software canvas
+ * draws reduced levels of the snapshot, as it is bound by the number of
+ * pixels it reads.
+ *
+ * A renderer that is not supported by the canvas, such as the live renderer
+ * on Android 4.3 with hardware acceleration, is replaced by the snapshot.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class AutoFoldRenderer implements IFoldRenderer {
+
+    private final LiveFoldRenderer mLiveRenderer = new LiveFoldRenderer();
+    private SnapshotFoldRenderer mSnapshotRenderer;
+    private SnapshotFoldRenderer mLevelsRenderer;
+
+    private IFoldRenderer mCurrentRenderer;
+
+    private boolean mHasLiveContent = false;
+
+    @Override
+    public boolean isSupported(Canvas canvas) {
+        return true;
+    }
+
+    @Override
+    public boolean keepsContentSize() {
+        return true;
+    }
+
+    /**
+     * Before the first frame of a fold the renderer is only known if the
+     * fold was prepared, otherwise the content is expected to be drawn live.
+     */
+    @Override
+    public boolean drawsContent() {
+        return mCurrentRenderer == null || mCurrentRenderer.drawsContent();
+    }
+
+    @Override
+    public boolean hasCapturedContent() {
+        return mCurrentRenderer != null && mCurrentRenderer.hasCapturedContent();
+    }
+
+    /**
+     * The canvas is not known yet, so the renderer is chosen from the
+     * acceleration of the layout.
+     */
+    @Override
+    public void onFoldPrepare(FoldingLayout layout) {
+        mHasLiveContent = hasLiveContent(layout.getChildAt(0));
+        if (mHasLiveContent || !layout.hasStableContentSize()) {
+            return;
+        }
+        IFoldRenderer renderer = layout.isHardwareAccelerated()
+                ? getSnapshotRenderer() : getLevelsRenderer();
+        setCurrentRenderer(renderer);
+        renderer.onFoldPrepare(layout);
+    }
+
+    @Override
+    public void onFoldStart(FoldingLayout layout) {
+        mHasLiveContent = hasLiveContent(layout.getChildAt(0));
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+        if (mCurrentRenderer != null) {
+            mCurrentRenderer.onFoldEnd(layout);
+        }
+    }
+
+    @Override
+    public void onContentInvalidated(FoldingLayout layout, Rect dirty) {
+        if (mCurrentRenderer != null) {
+            mCurrentRenderer.onContentInvalidated(layout, dirty);
+        }
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        IFoldRenderer renderer = selectRenderer(layout, canvas);
+        setCurrentRenderer(renderer);
+        return renderer.draw(layout, canvas);
+    }
+
+    private void setCurrentRenderer(IFoldRenderer renderer) {
+        if (renderer != mCurrentRenderer) {
+            if (mCurrentRenderer != null) {
+                mCurrentRenderer.release();
+            }
+            mCurrentRenderer = renderer;
+        }
+    }
+
+    private IFoldRenderer selectRenderer(FoldingLayout layout, Canvas canvas) {
+        IFoldRenderer renderer;
+        if (mHasLiveContent || !layout.hasStableContentSize()) {
+            renderer = mLiveRenderer;
+        } else if (canvas.isHardwareAccelerated()) {
+            renderer = getSnapshotRenderer();
+        } else {
+            renderer = getLevelsRenderer();
+        }
+
+        if (!renderer.isSupported(canvas)) {
+            renderer = getSnapshotRenderer();
+        }
+        return renderer;
+    }
+
+    private SnapshotFoldRenderer getSnapshotRenderer() {
+        if (mSnapshotRenderer == null) {
+            mSnapshotRenderer = new SnapshotFoldRenderer();
+        }
+        return mSnapshotRenderer;
+    }
+
+    private SnapshotFoldRenderer getLevelsRenderer() {
+        if (mLevelsRenderer == null) {
+            mLevelsRenderer = new SnapshotFoldRenderer(true);
+        }
+        return mLevelsRenderer;
+    }
+
+    private static boolean hasLiveContent(View view) {
+        if (view instanceof TextureView || view instanceof SurfaceView) {
+            return true;
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                if (hasLiveContent(group.getChildAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void release() {
+        if (mCurrentRenderer != null) {
+            mCurrentRenderer.release();
+            mCurrentRenderer = null;
+        }
+    }
+
+}
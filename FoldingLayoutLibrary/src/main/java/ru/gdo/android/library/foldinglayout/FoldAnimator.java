@@ -0,0 +1,191 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.animation.TimeInterpolator;
+
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldAnimatorListener;
+
+/**
+ * Animates a fold factor between two values on the frames of the
+ * FoldTicker. The value is computed from the vsync time of every frame, so
+ * it is continuous and follows the refresh rate of the display, and a
+ * running animation does not allocate anything.
+ *
+ * An animation either runs for a duration along a curve, or follows a
+ * FoldSpring whose target can be changed while it runs.
+ *
+ * Must only be used on the UI thread.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldAnimator {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final float NANOS_PER_SECOND = 1000000000f;
+
+    private final FoldTicker mTicker = FoldTicker.getInstance();
+    private final IFoldAnimatorListener mListener;
+
+    private TimeInterpolator mInterpolator = FoldInterpolator.getDefault();
+    private long mDuration;
+
+    private float mFrom;
+    private float mTo;
+    private long mRunDuration;
+    private TimeInterpolator mRunInterpolator;
+    private long mStartTime;
+    private boolean mIsRunning = false;
+
+    private final FoldSpring mSpring = new FoldSpring();
+    private boolean mIsSpring = false;
+
+    /**
+     * True while the ticker holds this animator, which it keeps doing for
+     * the rest of a frame it was cancelled in.
+     */
+    boolean mIsScheduled = false;
+
+    public FoldAnimator(IFoldAnimatorListener listener, long duration) {
+        this.mListener = listener;
+        this.mDuration = duration;
+    }
+
+    public void setDuration(long duration) {
+        this.mDuration = duration;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * The interpolator is evaluated on every frame, wrap curves that are
+     * expensive to evaluate into a FoldInterpolator.
+     */
+    public void setInterpolator(TimeInterpolator interpolator) {
+        this.mInterpolator = interpolator;
+    }
+
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /**
+     * @return the spring used by springTo, to configure its stiffness and
+     * damping.
+     */
+    public FoldSpring getSpring() {
+        return mSpring;
+    }
+
+    /**
+     * @return the value the running animation ends at.
+     */
+    public float getTarget() {
+        return mIsSpring ? mSpring.getTarget() : mTo;
+    }
+
+    /**
+     * Starts to animate from one value to the other, the first value is
+     * delivered on the next frame.
+     */
+    public void start(float from, float to) {
+        start(from, to, mDuration, mInterpolator);
+    }
+
+    /**
+     * Starts a single animation with its own duration and curve, for example
+     * to settle a fling with the speed it was released at.
+     */
+    public void start(float from, float to, long duration, TimeInterpolator interpolator) {
+        mFrom = from;
+        mTo = to;
+        mRunDuration = duration;
+        mRunInterpolator = interpolator;
+        mIsSpring = false;
+        run();
+    }
+
+    /**
+     * Moves the value towards the target on the spring. If the spring is
+     * already running only its target changes, it keeps its current value
+     * and velocity, so it turns around without a jump.
+     *
+     * @param velocity initial velocity in units of the value per second,
+     *                 ignored when the spring is already running.
+     */
+    public void springTo(float from, float to, float velocity) {
+        if (mIsRunning && mIsSpring) {
+            mSpring.setTarget(to);
+            return;
+        }
+        mSpring.setState(from, velocity);
+        mSpring.setTarget(to);
+        mIsSpring = true;
+        run();
+    }
+
+    private void run() {
+        mStartTime = mTicker.now();
+        mIsRunning = true;
+        mListener.onFoldAnimationStart();
+        mTicker.add(this);
+    }
+
+    /**
+     * Stops the animation where it is, without reaching the end value.
+     */
+    public void cancel() {
+        if (mIsRunning) {
+            mIsRunning = false;
+            mListener.onFoldAnimationEnd();
+        }
+    }
+
+    /**
+     * Called by the ticker once per frame while the animation runs.
+     */
+    void doFrame(long frameTimeNanos) {
+        if (!mIsRunning) {
+            return;
+        }
+
+        if (mIsSpring) {
+            doSpringFrame(frameTimeNanos);
+            return;
+        }
+
+        float fraction = 1;
+        if (mRunDuration > 0) {
+            fraction = (frameTimeNanos - mStartTime) / (float) (mRunDuration * NANOS_PER_MILLI);
+            fraction = Math.max(0, Math.min(1, fraction));
+        }
+
+        if (fraction >= 1) {
+            mIsRunning = false;
+            mListener.onFoldAnimationUpdate(mTo);
+            mListener.onFoldAnimationEnd();
+            return;
+        }
+
+        mListener.onFoldAnimationUpdate(mFrom + (mTo - mFrom) * mRunInterpolator.getInterpolation(fraction));
+    }
+
+    private void doSpringFrame(long frameTimeNanos) {
+        mSpring.step(Math.max(0, frameTimeNanos - mStartTime) / NANOS_PER_SECOND);
+        mStartTime = Math.max(mStartTime, frameTimeNanos);
+
+        if (mSpring.isAtRest()) {
+            mSpring.snapToTarget();
+            mIsRunning = false;
+            mListener.onFoldAnimationUpdate(mSpring.getValue());
+            mListener.onFoldAnimationEnd();
+            return;
+        }
+
+        mListener.onFoldAnimationUpdate(mSpring.getValue());
+    }
+
+}
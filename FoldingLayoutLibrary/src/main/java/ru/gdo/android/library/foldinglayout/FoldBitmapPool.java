@@ -0,0 +1,197 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/**
+ * Process wide pool of the bitmaps used for fold snapshots. All the folding
+ * layouts share it, so opening and closing panels does not allocate a new
+ * full size bitmap every time.
+ *
+ * Bitmaps are matched by size and config. Starting with KitKat a larger
+ * pooled bitmap is reconfigured when there is no exact match. The pool is
+ * kept under a byte budget by evicting the least recently used bitmaps and
+ * it gives its memory back when the system asks to trim memory.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldBitmapPool implements ComponentCallbacks2 {
+
+    /**
+     * Default share of the heap the pool may keep
+     */
+    private static final int DEFAULT_HEAP_FRACTION = 8;
+
+    private static FoldBitmapPool sInstance;
+
+    /**
+     * Pooled bitmaps, the least recently used first
+     */
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<Bitmap>();
+
+    private int mMaxSize;
+    private int mCurrentSize = 0;
+
+    FoldBitmapPool(int maxSize) {
+        this.mMaxSize = maxSize;
+    }
+
+    public static synchronized FoldBitmapPool getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FoldBitmapPool((int) (Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION));
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Sets the number of bytes the pool may hold. Bitmaps over the budget are
+     * evicted immediately.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int getCurrentSize() {
+        return mCurrentSize;
+    }
+
+    /**
+     * Returns a transparent bitmap of the requested size and config, taken
+     * from the pool when possible.
+     *
+     * @throws OutOfMemoryError if a new bitmap had to be allocated and there
+     *                          was not enough memory for it.
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = obtain(width, height, config);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    private synchronized Bitmap obtain(int width, int height, Bitmap.Config config) {
+        for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                return remove(i);
+            }
+        }
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return null;
+        }
+
+        /*
+         * No exact match, so the smallest bitmap that is large enough is
+         * reconfigured to the requested size.
+         */
+        int required = width * height * bytesPerPixel(config);
+        int candidate = -1;
+        for (int i = 0; i < mBitmaps.size(); i++) {
+            int size = mBitmaps.get(i).getAllocationByteCount();
+            if (size >= required
+                    && (candidate < 0 || size < mBitmaps.get(candidate).getAllocationByteCount())) {
+                candidate = i;
+            }
+        }
+        if (candidate < 0) {
+            return null;
+        }
+
+        Bitmap bitmap = remove(candidate);
+        bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * Gives a bitmap back to the pool. The bitmap must not be used by the
+     * caller afterwards.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = sizeOf(bitmap);
+        if (!bitmap.isMutable() || size > mMaxSize) {
+            bitmap.recycle();
+            return;
+        }
+        mBitmaps.add(bitmap);
+        mCurrentSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Recycles all the pooled bitmaps.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mCurrentSize > maxSize && !mBitmaps.isEmpty()) {
+            remove(0).recycle();
+        }
+    }
+
+    private Bitmap remove(int index) {
+        Bitmap bitmap = mBitmaps.remove(index);
+        mCurrentSize -= sizeOf(bitmap);
+        return bitmap;
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(mMaxSize / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+
+    }
+
+}
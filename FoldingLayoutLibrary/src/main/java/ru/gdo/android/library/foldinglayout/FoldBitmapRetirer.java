@@ -0,0 +1,65 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Bitmap;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Gives bitmaps that are no longer drawn back to the pool once the frames
+ * that may still reference them are done. A bitmap drawn by the last frame
+ * can still be part of its display list, so it must not be handed out and
+ * written again before RETIRE_FRAMES more frames have been drawn.
+ *
+ * Must only be used on the UI thread.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+class FoldBitmapRetirer {
+
+    /**
+     * Frames a bitmap that is no longer drawn is kept out of use.
+     */
+    static final int RETIRE_FRAMES = 2;
+
+    private FoldBitmapPool mPool;
+    private final ArrayList<Bitmap> mRetiredBitmaps = new ArrayList<Bitmap>();
+    private int mRetireFramesLeft = 0;
+    private boolean mIsRetirePosted = false;
+
+    private final Choreographer.FrameCallback mRetireCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (--mRetireFramesLeft > 0) {
+                Choreographer.getInstance().postFrameCallback(this);
+                return;
+            }
+            mIsRetirePosted = false;
+            for (int i = 0; i < mRetiredBitmaps.size(); i++) {
+                mPool.put(mRetiredBitmaps.get(i));
+            }
+            mRetiredBitmaps.clear();
+        }
+    };
+
+    /**
+     * Puts the bitmap back into the pool after RETIRE_FRAMES frames. Every
+     * bitmap retired in between restarts the count.
+     */
+    void retire(FoldBitmapPool pool, Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        mPool = pool;
+        mRetiredBitmaps.add(bitmap);
+        mRetireFramesLeft = RETIRE_FRAMES;
+        if (!mIsRetirePosted) {
+            mIsRetirePosted = true;
+            Choreographer.getInstance().postFrameCallback(mRetireCallback);
+        }
+    }
+
+}
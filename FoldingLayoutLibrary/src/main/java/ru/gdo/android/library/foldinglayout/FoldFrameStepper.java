@@ -0,0 +1,232 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Virtual clock for the fold animations. While it is installed the
+ * FoldTicker no longer waits for the Choreographer, every call to step
+ * moves the clock forward by one frame interval and runs that frame right
+ * away. A test can so play a whole animation in a few milliseconds with the
+ * same frame times on every run.
+ *
+ * After the animators, every watched panel goes through the rest of a
+ * frame: it is measured and laid out again with its current size if it
+ * requested a layout, and drawn into a Picture the way a hardware
+ * accelerated frame records its display list. Every frame is recorded with
+ * the time all of this took and the fold of the watched panels, so a test
+ * can check the geometry of single frames or put a limit on the work per
+ * frame.
+ *
+ * Must only be used on the UI thread, or the main thread of a test.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldFrameStepper {
+
+    /**
+     * Frame interval of a 60 Hz display.
+     */
+    public static final long FRAME_INTERVAL_60HZ = 16666667L;
+
+    /**
+     * One stepped frame.
+     */
+    public static class Frame {
+
+        /**
+         * Virtual time of the frame.
+         */
+        public final long timeNanos;
+
+        /**
+         * Real time the animators took for the frame, together with the
+         * measure, layout and draw of the watched panels.
+         */
+        public final long workNanos;
+
+        /**
+         * Fold factor, geometry hash and fold quads of every watched panel,
+         * in the order they were watched.
+         */
+        public final float[] foldFactors;
+        public final long[] fingerprints;
+        public final float[][] quads;
+
+        Frame(long timeNanos, long workNanos, int panels) {
+            this.timeNanos = timeNanos;
+            this.workNanos = workNanos;
+            this.foldFactors = new float[panels];
+            this.fingerprints = new long[panels];
+            this.quads = new float[panels][];
+        }
+
+        /**
+         * @return true if the panel drew the same fold on the previous frame.
+         */
+        public boolean isDuplicate(Frame previous, int panel) {
+            return previous != null && previous.fingerprints[panel] == fingerprints[panel];
+        }
+    }
+
+    private final FoldTicker mTicker = FoldTicker.getInstance();
+    private final long mFrameInterval;
+    private long mTime = 0;
+
+    private final ArrayList<FoldingPanelLayout> mPanels = new ArrayList<FoldingPanelLayout>();
+    private final ArrayList<Frame> mFrames = new ArrayList<Frame>();
+
+    private final Picture mPicture = new Picture();
+
+    public FoldFrameStepper() {
+        this(FRAME_INTERVAL_60HZ);
+    }
+
+    /**
+     * @param frameIntervalNanos time between two frames, for example 8333333
+     *                           for a 120 Hz display.
+     */
+    public FoldFrameStepper(long frameIntervalNanos) {
+        if (frameIntervalNanos <= 0) {
+            throw new IllegalArgumentException("Frame interval must be positive");
+        }
+        this.mFrameInterval = frameIntervalNanos;
+    }
+
+    /**
+     * Takes the frames of all fold animations over from the Choreographer.
+     * Animations started from now on measure their time on this clock.
+     */
+    public void install() {
+        mTicker.setFrameStepper(this);
+    }
+
+    /**
+     * Gives the frames back to the Choreographer. Animations should be
+     * finished first, a running one would jump to the time of the real
+     * clock.
+     */
+    public void uninstall() {
+        mTicker.setFrameStepper(null);
+    }
+
+    public long getTime() {
+        return mTime;
+    }
+
+    /**
+     * Moves the clock without running a frame, like a frame the display
+     * dropped.
+     */
+    public void skip(long nanos) {
+        mTime += nanos;
+    }
+
+    /**
+     * Measures, lays out and draws the panel with every following frame and
+     * records its fold.
+     */
+    public void watch(FoldingPanelLayout panel) {
+        mPanels.add(panel);
+    }
+
+    /**
+     * @return true if a fold animation still runs.
+     */
+    public boolean isAnimating() {
+        return mTicker.getAnimatorCount() > 0;
+    }
+
+    /**
+     * Moves the clock by one frame interval and runs the frame.
+     *
+     * @return the recorded frame.
+     */
+    public Frame step() {
+        mTime += mFrameInterval;
+        long start = System.nanoTime();
+        mTicker.doFrame(mTime);
+        int count = mPanels.size();
+        for (int i = 0; i < count; i++) {
+            traverse(mPanels.get(i));
+        }
+        long work = System.nanoTime() - start;
+
+        Frame frame = new Frame(mTime, work, count);
+        for (int i = 0; i < count; i++) {
+            FoldingLayout layout = mPanels.get(i).mFoldingNavigationLayout;
+            frame.foldFactors[i] = layout.getFoldFactor();
+            frame.fingerprints[i] = layout.getGeometryFingerprint();
+            float[] quads = layout.getFoldQuads();
+            frame.quads[i] = quads != null ? quads.clone() : null;
+        }
+        mFrames.add(frame);
+        return frame;
+    }
+
+    /*
+     * Does what the traversal of the window does for the panel after the
+     * animation callbacks of a frame. The size of the panel does not change
+     * with its fold, so it is measured exactly with the size it has.
+     */
+    private void traverse(View panel) {
+        int width = panel.getWidth();
+        int height = panel.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (panel.isLayoutRequested()) {
+            panel.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+            panel.layout(panel.getLeft(), panel.getTop(), panel.getRight(), panel.getBottom());
+        }
+        Canvas canvas = mPicture.beginRecording(width, height);
+        panel.draw(canvas);
+        mPicture.endRecording();
+    }
+
+    /**
+     * Steps frames until no fold animation runs any more.
+     *
+     * @param maxFrames frames after which it gives up.
+     * @return the number of frames stepped.
+     */
+    public int runUntilIdle(int maxFrames) {
+        int frames = 0;
+        while (isAnimating() && frames < maxFrames) {
+            step();
+            frames++;
+        }
+        return frames;
+    }
+
+    public ArrayList<Frame> getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * @return the longest time the animators and the measure, layout and
+     * draw of the panels took for one of the recorded frames.
+     */
+    public long getMaxWorkNanos() {
+        long max = 0;
+        for (int i = 0; i < mFrames.size(); i++) {
+            max = Math.max(max, mFrames.get(i).workNanos);
+        }
+        return max;
+    }
+
+    /**
+     * Forgets the recorded frames, the clock keeps its time.
+     */
+    public void clearFrames() {
+        mFrames.clear();
+    }
+
+}
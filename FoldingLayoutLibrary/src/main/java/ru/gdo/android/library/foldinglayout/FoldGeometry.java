@@ -0,0 +1,308 @@
+package ru.gdo.android.library.foldinglayout;
+
+/**
+ * The math of a fold without any Android dependency. It computes the strips
+ * the content is cut into, the quadrilateral every strip is drawn into and
+ * the perspective matrix that maps a strip onto its quadrilateral.
+ *
+ * All results are written into primitive arrays supplied by the caller, so
+ * a frame does not allocate anything:
+ *
+ * - strips hold STRIP_SIZE ints per fold: left, top, right, bottom;
+ * - quads hold QUAD_SIZE floats per fold: the x and y of the top left,
+ * bottom left, top right and bottom right corners;
+ * - matrices hold MATRIX_SIZE floats per fold in the row major order of
+ * android.graphics.Matrix.getValues.
+ *
+ * A fold is always a trapezoid whose parallel sides are across the folding
+ * axis, so its matrix is built in closed form instead of solving the
+ * general perspective system.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldGeometry {
+
+    public static final int STRIP_SIZE = 4;
+    public static final int QUAD_SIZE = 8;
+    public static final int MATRIX_SIZE = 9;
+
+    /**
+     * Share of the size a fold loses across the folding axis when it is
+     * completely folded. It controls the amount of perspective.
+     */
+    private static final float PERSPECTIVE = 0.10f;
+
+    private float mFoldDrawWidth = 0;
+    private float mFoldDrawHeight = 0;
+
+    /**
+     * Cuts the given area into equal strips along the folding axis. If the
+     * size does not divide evenly the last strip takes up the difference,
+     * and strips that would start past the end of the area are empty.
+     */
+    public static void segment(int width, int height, int folds, boolean isHorizontal, int[] strips) {
+        int size = isHorizontal ? width : height;
+        int delta = Math.round(((float) size) / ((float) folds));
+
+        for (int x = 0; x < folds; x++) {
+            int i = x * STRIP_SIZE;
+            int start = Math.min(x * delta, size);
+            int end = (x == folds - 1) ? size : Math.min((x + 1) * delta, size);
+            if (isHorizontal) {
+                strips[i] = start;
+                strips[i + 1] = 0;
+                strips[i + 2] = end;
+                strips[i + 3] = height;
+            } else {
+                strips[i] = 0;
+                strips[i + 1] = start;
+                strips[i + 2] = width;
+                strips[i + 3] = end;
+            }
+        }
+    }
+
+    /**
+     * Computes the quadrilateral and the matrix of every fold.
+     *
+     * @param anchorFactor position of the fold that does not move, as a share
+     *                     of the size along the folding axis.
+     * @param foldFactor   the fold factor of FoldingLayout, range [0, 1] where
+     *                     0 = collapsed, with the strongest perspective, and
+     *                     1 = expanded, where the folds lie flat. FoldingLayout
+     *                     draws its child directly at 1.
+     * @return false if the folds have no area left, in which case nothing has
+     * to be drawn and the buffers are only partly written.
+     */
+    public boolean compute(int width, int height, int folds, float anchorFactor,
+                           boolean isHorizontal, float foldFactor, float[] quads, float[] matrices) {
+        int delta = Math.round(isHorizontal ?
+                ((float) width) / ((float) folds) :
+                ((float) height) / ((float) folds));
+
+        float foldMaxWidth = isHorizontal ? delta : width;
+        float foldMaxHeight = isHorizontal ? height : delta;
+
+        float translatedDistance = (isHorizontal ? width : height) * (1 - foldFactor);
+        float translatedDistancePerFold = Math.round(translatedDistance / folds);
+
+        /*
+         * For an odd number of folds, the rounding error may cause the
+         * translatedDistancePerFold to be greater than the max fold width or
+         * height.
+         */
+        mFoldDrawWidth = Math.max(foldMaxWidth, translatedDistancePerFold);
+        mFoldDrawHeight = Math.max(foldMaxHeight, translatedDistancePerFold);
+
+        /*
+         * The size of some object is always inversely proportional to the
+         * distance it is away from the viewpoint.
+         */
+        float scaleFactor = 1.0f - (PERSPECTIVE * (1 - foldFactor));
+
+        float scaledWidth = isHorizontal ? mFoldDrawWidth : mFoldDrawWidth * scaleFactor;
+        float scaledHeight = isHorizontal ? mFoldDrawHeight * scaleFactor : mFoldDrawHeight;
+
+        float topScaledPoint = (mFoldDrawHeight - scaledHeight) / 2.0f;
+        float bottomScaledPoint = topScaledPoint + scaledHeight;
+        float leftScaledPoint = (mFoldDrawWidth - scaledWidth) / 2.0f;
+        float rightScaledPoint = leftScaledPoint + scaledWidth;
+
+        float anchorPoint = anchorFactor * (isHorizontal ? width : height);
+
+        /* The fold along which the anchor point is located. */
+        float midFold = anchorPoint / (isHorizontal ? mFoldDrawWidth : mFoldDrawHeight);
+
+        for (int x = 0; x < folds; x++) {
+            boolean isEven = (x % 2 == 0);
+            int q = x * QUAD_SIZE;
+
+            if (isHorizontal) {
+                quads[q] = (anchorPoint > x * mFoldDrawWidth) ? anchorPoint
+                        + (x - midFold) * scaledWidth : anchorPoint
+                        - (midFold - x) * scaledWidth;
+                quads[q + 1] = isEven ? 0 : topScaledPoint;
+                quads[q + 2] = quads[q];
+                quads[q + 3] = isEven ? mFoldDrawHeight : bottomScaledPoint;
+                quads[q + 4] = (anchorPoint > (x + 1) * mFoldDrawWidth) ? anchorPoint
+                        + (x + 1 - midFold) * scaledWidth
+                        : anchorPoint - (midFold - x - 1) * scaledWidth;
+                quads[q + 5] = isEven ? topScaledPoint : 0;
+                quads[q + 6] = quads[q + 4];
+                quads[q + 7] = isEven ? bottomScaledPoint : mFoldDrawHeight;
+            } else {
+                quads[q] = isEven ? 0 : leftScaledPoint;
+                quads[q + 1] = (anchorPoint > x * mFoldDrawHeight) ? anchorPoint
+                        + (x - midFold) * scaledHeight :
+                        anchorPoint - (midFold - x) * scaledHeight;
+                quads[q + 2] = isEven ? leftScaledPoint : 0;
+                quads[q + 3] = (anchorPoint > (x + 1) * mFoldDrawHeight) ? anchorPoint
+                        + (x + 1 - midFold) * scaledHeight :
+                        anchorPoint - (midFold - x - 1) * scaledHeight;
+                quads[q + 4] = isEven ? mFoldDrawWidth : rightScaledPoint;
+                quads[q + 5] = quads[q + 1];
+                quads[q + 6] = isEven ? rightScaledPoint : mFoldDrawWidth;
+                quads[q + 7] = quads[q + 3];
+            }
+
+            /*
+             * Pixel fractions are present for odd number of folds which need
+             * to be rounded off here.
+             */
+            for (int y = q; y < q + QUAD_SIZE; y++) {
+                quads[y] = Math.round(quads[y]);
+            }
+
+            if (!hasArea(quads, q, isHorizontal)) {
+                return false;
+            }
+
+            trapezoidToMatrix(mFoldDrawWidth, mFoldDrawHeight, isHorizontal,
+                    quads, q, matrices, x * MATRIX_SIZE);
+        }
+        return true;
+    }
+
+    /**
+     * A fold without width or height means the view is essentially
+     * completely folded.
+     *
+     * @return true if both edges of the quad at the given offset have a
+     * length along the folding axis.
+     */
+    static boolean hasArea(float[] quads, int q, boolean isHorizontal) {
+        if (isHorizontal) {
+            return quads[q + 4] > quads[q] && quads[q + 6] > quads[q + 2];
+        }
+        return quads[q + 3] > quads[q + 1] && quads[q + 7] > quads[q + 5];
+    }
+
+    /**
+     * Builds the matrix that maps the rectangle (0, 0, width, height) onto
+     * the trapezoid of a fold. With horizontal folds the left and right sides
+     * of the trapezoid are vertical, with vertical folds the top and bottom
+     * sides are horizontal. The perspective then only acts along the folding
+     * axis and its single term is the ratio of the parallel sides.
+     */
+    public static void trapezoidToMatrix(float width, float height, boolean isHorizontal,
+                                         float[] quad, int quadOffset,
+                                         float[] matrix, int matrixOffset) {
+        if (isHorizontal) {
+            float left = quad[quadOffset];
+            float right = quad[quadOffset + 4];
+            float leftTop = quad[quadOffset + 1];
+            float rightTop = quad[quadOffset + 5];
+            float leftHeight = quad[quadOffset + 3] - leftTop;
+            float rightHeight = quad[quadOffset + 7] - rightTop;
+            if (rightHeight == 0) {
+                rectToQuad(width, height, quad, quadOffset, matrix, matrixOffset);
+                return;
+            }
+            float g = leftHeight / rightHeight - 1;
+
+            matrix[matrixOffset] = (right - left + g * right) / width;
+            matrix[matrixOffset + 1] = 0;
+            matrix[matrixOffset + 2] = left;
+            matrix[matrixOffset + 3] = (rightTop - leftTop + g * rightTop) / width;
+            matrix[matrixOffset + 4] = leftHeight / height;
+            matrix[matrixOffset + 5] = leftTop;
+            matrix[matrixOffset + 6] = g / width;
+            matrix[matrixOffset + 7] = 0;
+        } else {
+            float top = quad[quadOffset + 1];
+            float bottom = quad[quadOffset + 3];
+            float topLeft = quad[quadOffset];
+            float bottomLeft = quad[quadOffset + 2];
+            float topWidth = quad[quadOffset + 4] - topLeft;
+            float bottomWidth = quad[quadOffset + 6] - bottomLeft;
+            if (bottomWidth == 0) {
+                rectToQuad(width, height, quad, quadOffset, matrix, matrixOffset);
+                return;
+            }
+            float h = topWidth / bottomWidth - 1;
+
+            matrix[matrixOffset] = topWidth / width;
+            matrix[matrixOffset + 1] = (bottomLeft - topLeft + h * bottomLeft) / height;
+            matrix[matrixOffset + 2] = topLeft;
+            matrix[matrixOffset + 3] = 0;
+            matrix[matrixOffset + 4] = (bottom - top + h * bottom) / height;
+            matrix[matrixOffset + 5] = top;
+            matrix[matrixOffset + 6] = 0;
+            matrix[matrixOffset + 7] = h / height;
+        }
+        matrix[matrixOffset + 8] = 1;
+    }
+
+    /**
+     * Solves the perspective transformation that maps the rectangle
+     * (0, 0, width, height) onto the quadrilateral at quadOffset, which is
+     * what Matrix.setPolyToPoly does for four points.
+     */
+    public static void rectToQuad(float width, float height, float[] quad, int quadOffset,
+                                  float[] matrix, int matrixOffset) {
+        float x0 = quad[quadOffset];
+        float y0 = quad[quadOffset + 1];
+        float x3 = quad[quadOffset + 2];
+        float y3 = quad[quadOffset + 3];
+        float x1 = quad[quadOffset + 4];
+        float y1 = quad[quadOffset + 5];
+        float x2 = quad[quadOffset + 6];
+        float y2 = quad[quadOffset + 7];
+
+        float dx3 = x0 - x1 + x2 - x3;
+        float dy3 = y0 - y1 + y2 - y3;
+
+        float g = 0;
+        float h = 0;
+        if (dx3 != 0 || dy3 != 0) {
+            float dx1 = x1 - x2;
+            float dx2 = x3 - x2;
+            float dy1 = y1 - y2;
+            float dy2 = y3 - y2;
+            float det = dx1 * dy2 - dx2 * dy1;
+            if (det != 0) {
+                g = (dx3 * dy2 - dx2 * dy3) / det;
+                h = (dx1 * dy3 - dx3 * dy1) / det;
+            }
+        }
+
+        /*
+         * The solution maps the unit square, so its columns are divided by
+         * the size of the rectangle.
+         */
+        matrix[matrixOffset] = (x1 - x0 + g * x1) / width;
+        matrix[matrixOffset + 1] = (x3 - x0 + h * x3) / height;
+        matrix[matrixOffset + 2] = x0;
+        matrix[matrixOffset + 3] = (y1 - y0 + g * y1) / width;
+        matrix[matrixOffset + 4] = (y3 - y0 + h * y3) / height;
+        matrix[matrixOffset + 5] = y0;
+        matrix[matrixOffset + 6] = g / width;
+        matrix[matrixOffset + 7] = h / height;
+        matrix[matrixOffset + 8] = 1;
+    }
+
+    /**
+     * @param maxAlpha share of an opaque shadow used when the layout is
+     *                 completely folded.
+     * @return alpha of the shadow of the folds for the given fold factor.
+     */
+    public static int shadingAlpha(float foldFactor, float maxAlpha) {
+        return (int) ((1 - foldFactor) * 255 * maxAlpha);
+    }
+
+    /**
+     * @return the width of the strip a fold is drawn from, valid after
+     * compute.
+     */
+    public float getFoldDrawWidth() {
+        return mFoldDrawWidth;
+    }
+
+    public float getFoldDrawHeight() {
+        return mFoldDrawHeight;
+    }
+
+}
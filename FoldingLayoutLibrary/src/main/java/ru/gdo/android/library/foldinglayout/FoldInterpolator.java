@@ -0,0 +1,77 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.animation.TimeInterpolator;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+
+/**
+ * Interpolator that samples another interpolator into a table once and
+ * answers every frame by interpolating linearly between two samples, so a
+ * frame neither allocates nor evaluates the curve itself.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldInterpolator implements TimeInterpolator {
+
+    public static final int DEFAULT_SAMPLES = 64;
+
+    private static FoldInterpolator sDefault;
+    private static FoldInterpolator sDecelerate;
+
+    private final float[] mValues;
+
+    public FoldInterpolator(TimeInterpolator interpolator) {
+        this(interpolator, DEFAULT_SAMPLES);
+    }
+
+    /**
+     * @param samples number of intervals the input range is split into.
+     */
+    public FoldInterpolator(TimeInterpolator interpolator, int samples) {
+        this.mValues = new float[samples + 1];
+        for (int i = 0; i <= samples; i++) {
+            mValues[i] = interpolator.getInterpolation(i / (float) samples);
+        }
+    }
+
+    /**
+     * @return the table of the accelerate decelerate curve ValueAnimator
+     * uses by default.
+     */
+    public static FoldInterpolator getDefault() {
+        if (sDefault == null) {
+            sDefault = new FoldInterpolator(new AccelerateDecelerateInterpolator());
+        }
+        return sDefault;
+    }
+
+    /**
+     * @return the table of a curve that starts at twice the average speed
+     * and slows down to a stop, used to settle a fling.
+     */
+    public static FoldInterpolator getDecelerate() {
+        if (sDecelerate == null) {
+            sDecelerate = new FoldInterpolator(new DecelerateInterpolator());
+        }
+        return sDecelerate;
+    }
+
+    @Override
+    public float getInterpolation(float input) {
+        if (input <= 0) {
+            return mValues[0];
+        }
+        int last = mValues.length - 1;
+        if (input >= 1) {
+            return mValues[last];
+        }
+        float position = input * last;
+        int index = (int) position;
+        float start = mValues[index];
+        return start + (mValues[index + 1] - start) * (position - index);
+    }
+
+}
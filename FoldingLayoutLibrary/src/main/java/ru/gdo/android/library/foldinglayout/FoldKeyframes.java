@@ -0,0 +1,129 @@
+package ru.gdo.android.library.foldinglayout;
+
+/**
+ * Table of fold geometry at evenly spaced fold factors. For a given size,
+ * number of folds, anchor and orientation the geometry only depends on the
+ * fold factor, so a frame interpolates the quads of the two closest
+ * keyframes and builds the matrices from them, which costs the same for
+ * every fold factor. The interpolated quads are rounded like the exact ones
+ * and stay within 2 pixels of them.
+ *
+ * The table is computed once at a reference size, usually the unfolded
+ * size of the content, and only used while the folds are drawn at exactly
+ * that size. The exact geometry rounds the size of the strips and the
+ * distance every fold moves, so it does not scale with the size: scaling
+ * the table to a layout that shrinks with the fold is off by several pixels
+ * and can disagree on whether the folds are visible at all. Any other size,
+ * and fold factors next to a keyframe without any area left, are therefore
+ * computed exactly.
+ *
+ * A table never changes once it is built, so layouts with the same
+ * configuration share it through SharedFoldResources.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldKeyframes {
+
+    private final int mCount;
+    private final int mReferenceWidth;
+    private final int mReferenceHeight;
+    private final int mFolds;
+    private final float mAnchorFactor;
+    private final boolean mIsHorizontal;
+
+    private final float[] mQuads;
+    private final float[] mDrawWidths;
+    private final float[] mDrawHeights;
+    private final boolean[] mIsVisible;
+
+    /**
+     * Computes every keyframe at the reference size.
+     *
+     * @param count number of intervals the range of fold factors is split
+     *              into.
+     */
+    public FoldKeyframes(int count, int referenceWidth, int referenceHeight, int folds,
+                         float anchorFactor, boolean isHorizontal) {
+        this.mCount = count;
+        this.mReferenceWidth = referenceWidth;
+        this.mReferenceHeight = referenceHeight;
+        this.mFolds = folds;
+        this.mAnchorFactor = anchorFactor;
+        this.mIsHorizontal = isHorizontal;
+
+        int size = folds * FoldGeometry.QUAD_SIZE;
+        this.mQuads = new float[(count + 1) * size];
+        this.mDrawWidths = new float[count + 1];
+        this.mDrawHeights = new float[count + 1];
+        this.mIsVisible = new boolean[count + 1];
+
+        FoldGeometry geometry = new FoldGeometry();
+        float[] quads = new float[size];
+        float[] matrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        for (int key = 0; key <= count; key++) {
+            mIsVisible[key] = geometry.compute(referenceWidth, referenceHeight, folds,
+                    anchorFactor, isHorizontal, key / (float) count, quads, matrices);
+            mDrawWidths[key] = geometry.getFoldDrawWidth();
+            mDrawHeights[key] = geometry.getFoldDrawHeight();
+            System.arraycopy(quads, 0, mQuads, key * size, size);
+        }
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Same contract as FoldGeometry.compute for the configuration of the
+     * table. The result is interpolated from the table when the folds are
+     * drawn at the reference size, any other size is computed exactly.
+     *
+     * @param geometry the geometry the exact results are computed with.
+     * @param width    size the folds are drawn into.
+     * @param height   see width.
+     * @param drawSize receives the width and the height of a fold.
+     */
+    public boolean compute(FoldGeometry geometry, int width, int height, float foldFactor,
+                           float[] quads, float[] matrices, float[] drawSize) {
+        float position = foldFactor * mCount;
+        int key = (int) position;
+        if (width != mReferenceWidth || height != mReferenceHeight
+                || key >= mCount || !mIsVisible[key] || !mIsVisible[key + 1]) {
+            boolean isVisible = geometry.compute(width, height, mFolds, mAnchorFactor,
+                    mIsHorizontal, foldFactor, quads, matrices);
+            drawSize[0] = geometry.getFoldDrawWidth();
+            drawSize[1] = geometry.getFoldDrawHeight();
+            return isVisible;
+        }
+
+        float fraction = position - key;
+        int size = mFolds * FoldGeometry.QUAD_SIZE;
+        int from = key * size;
+        int to = from + size;
+        for (int i = 0; i < size; i++) {
+            float value = mQuads[from + i];
+            quads[i] = Math.round(value + (mQuads[to + i] - value) * fraction);
+        }
+        float drawWidth = mDrawWidths[key] + (mDrawWidths[key + 1] - mDrawWidths[key]) * fraction;
+        float drawHeight = mDrawHeights[key] + (mDrawHeights[key + 1] - mDrawHeights[key]) * fraction;
+        drawSize[0] = drawWidth;
+        drawSize[1] = drawHeight;
+        if (drawWidth <= 0 || drawHeight <= 0) {
+            return false;
+        }
+
+        for (int x = 0; x < mFolds; x++) {
+            int q = x * FoldGeometry.QUAD_SIZE;
+            if (!FoldGeometry.hasArea(quads, q, mIsHorizontal)) {
+                return false;
+            }
+            FoldGeometry.trapezoidToMatrix(drawWidth, drawHeight, mIsHorizontal,
+                    quads, q, matrices, x * FoldGeometry.MATRIX_SIZE);
+        }
+        return true;
+    }
+
+}
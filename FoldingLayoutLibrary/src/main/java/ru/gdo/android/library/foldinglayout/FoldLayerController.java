@@ -0,0 +1,96 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.view.View;
+
+/**
+ * Promotes the folded content to a hardware layer while the panel is moving,
+ * so a frame only composites the texture of the layer instead of
+ * traversing the content again.
+ *
+ * A layer only pays off when the content is static. If the content is
+ * invalidated on THRASH_FRAMES frames in a row the layer would be redrawn
+ * on every frame on top of the compositing, so it is dropped and not
+ * promoted again until the panel settles.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+class FoldLayerController {
+
+    static final int THRASH_FRAMES = 3;
+
+    private View mView;
+    private int mPreviousLayerType = View.LAYER_TYPE_NONE;
+
+    private boolean mIsInvalidated = false;
+    private int mInvalidatedFrames = 0;
+    private boolean mIsThrashing = false;
+
+    void promote(View view) {
+        if (mView != null || mIsThrashing || view == null || !view.isHardwareAccelerated()) {
+            return;
+        }
+        mPreviousLayerType = view.getLayerType();
+        if (mPreviousLayerType == View.LAYER_TYPE_HARDWARE) {
+            return;
+        }
+        mView = view;
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+        /*
+         * Changing the layer type invalidates the view itself, which is not a
+         * change of the content.
+         */
+        mIsInvalidated = false;
+        mInvalidatedFrames = 0;
+    }
+
+    boolean isPromoted() {
+        return mView != null;
+    }
+
+    void onContentInvalidated() {
+        if (mView != null) {
+            mIsInvalidated = true;
+        }
+    }
+
+    /**
+     * Called once per drawn frame of the fold.
+     */
+    void onFrame() {
+        if (mView == null) {
+            return;
+        }
+        if (!mIsInvalidated) {
+            mInvalidatedFrames = 0;
+            return;
+        }
+        mIsInvalidated = false;
+        if (++mInvalidatedFrames >= THRASH_FRAMES) {
+            mIsThrashing = true;
+            restore();
+        }
+    }
+
+    /**
+     * Gives the content its previous layer type back and allows it to be
+     * promoted again by the next animation.
+     */
+    void release() {
+        restore();
+        mIsThrashing = false;
+    }
+
+    private void restore() {
+        if (mView != null) {
+            mView.setLayerType(mPreviousLayerType, null);
+            mView = null;
+        }
+        mIsInvalidated = false;
+        mInvalidatedFrames = 0;
+    }
+
+}
@@ -0,0 +1,189 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Vertex and color arrays that describe all the folds as one bitmap mesh, so
+ * the whole folded content and its shading are drawn with a single
+ * drawBitmapMesh call.
+ *
+ * Every fold contributes SUBDIVISIONS columns to the mesh, whatever the
+ * size of its segment. drawBitmapMesh spreads the bitmap evenly over the
+ * columns, so a vertex shows a fixed point of the content. Each vertex is
+ * placed with the transformation matrix of the segment that contains this
+ * point, which keeps the perspective of the fold. A crease that does not
+ * fall on a vertex is cut across by the column around it. The segments only
+ * differ from an even split by the rounding of their size, so a crease is
+ * off its vertex by at most the rounding of the segments before it. The
+ * shading is applied by
+ * modulating the bitmap with a gray color per vertex.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+class FoldMesh {
+
+    /**
+     * Columns per fold. It has to be even so that the end of the shading
+     * gradient falls on a vertex when the folds split the content evenly.
+     */
+    static final int SUBDIVISIONS = 4;
+
+    private float[] mVerts;
+    private int[] mColors;
+
+    /**
+     * Start of every segment of the content along the folding axis, followed
+     * by the end of the last one, and the segment every column of vertices
+     * lies in.
+     */
+    private int[] mBounds;
+    private int[] mColumnFolds;
+
+    private int mNumberOfFolds = 0;
+    private boolean mIsHorizontal = true;
+    private int mColumns = 0;
+
+    /**
+     * Sizes the mesh for the current segments of the layout. Nothing is
+     * allocated when the number of folds did not change.
+     *
+     * @return false if the content has no size.
+     */
+    boolean setup(FoldingLayout layout) {
+        int numberOfFolds = layout.getNumberOfFolds();
+        boolean isHorizontal = layout.getFoldingOrientation() == FoldingLayout.HORIZONTAL;
+        if (getEnd(layout.getContentRect(numberOfFolds - 1), isHorizontal) <= 0) {
+            return false;
+        }
+
+        if (numberOfFolds != mNumberOfFolds || mVerts == null) {
+            mNumberOfFolds = numberOfFolds;
+            mColumns = numberOfFolds * SUBDIVISIONS;
+            int vertexCount = (mColumns + 1) * 2;
+            mVerts = new float[vertexCount * 2];
+            mColors = new int[vertexCount];
+            mBounds = new int[numberOfFolds + 1];
+            mColumnFolds = new int[mColumns + 1];
+        }
+        mIsHorizontal = isHorizontal;
+
+        for (int x = 0; x < numberOfFolds; x++) {
+            mBounds[x] = getStart(layout.getContentRect(x), isHorizontal);
+        }
+        mBounds[numberOfFolds] = getEnd(layout.getContentRect(numberOfFolds - 1), isHorizontal);
+        locateColumns(mBounds, numberOfFolds, mColumns, mColumnFolds);
+        return true;
+    }
+
+    /**
+     * Finds the segment of the content every column of vertices lies in.
+     * Column c shows the point c * length / columns of the content, which
+     * belongs to the last segment that starts at or before it. Empty
+     * segments at the end of the content are never picked, so the last
+     * column stays on the last segment that has a size.
+     *
+     * @param bounds      start of every segment followed by the end of the
+     *                    last one.
+     * @param columnFolds receives the segment of every column.
+     */
+    static void locateColumns(int[] bounds, int folds, int columns, int[] columnFolds) {
+        float length = bounds[folds];
+        int fold = 0;
+        for (int c = 0; c <= columns; c++) {
+            float position = c * length / columns;
+            while (fold < folds - 1 && bounds[fold + 1] <= position
+                    && bounds[fold + 1] < bounds[folds]) {
+                fold++;
+            }
+            columnFolds[c] = fold;
+        }
+    }
+
+    /**
+     * Computes the vertices and colors of the mesh from the current fold of
+     * the layout.
+     *
+     * @param shadingAlpha alpha of the shadow of the current fold factor
+     */
+    void build(FoldingLayout layout, int shadingAlpha) {
+        int columns = mColumns;
+        float shadingFactor = layout.getShadingFactor();
+        float length = mBounds[mNumberOfFolds];
+
+        int c = 0;
+        while (c <= columns) {
+            int x = mColumnFolds[c];
+            Rect content = layout.getContentRect(x);
+            Rect fold = layout.getFoldRect(x);
+            float contentStart = getStart(content, mIsHorizontal);
+            float contentSize = mIsHorizontal ? content.width() : content.height();
+            float foldSize = mIsHorizontal ? fold.width() : fold.height();
+            float cross = mIsHorizontal ? fold.height() : fold.width();
+
+            int first = c;
+            for (; c <= columns && mColumnFolds[c] == x; c++) {
+                float position = c * length / columns;
+                float local = contentSize > 0 ? (position - contentStart) * foldSize / contentSize : 0;
+
+                int shade = shadingAlpha;
+                if (x % 2 != 0) {
+                    float fraction = foldSize > 0 ? local / foldSize : 0;
+                    shade = (int) (shadingAlpha * Math.max(0, 1 - fraction / shadingFactor));
+                }
+                int gray = 255 - shade;
+                int color = Color.argb(255, gray, gray, gray);
+
+                for (int r = 0; r <= 1; r++) {
+                    int index = mIsHorizontal ? r * (columns + 1) + c : c * 2 + r;
+                    mVerts[index * 2] = mIsHorizontal ? local : r * cross;
+                    mVerts[index * 2 + 1] = mIsHorizontal ? r * cross : local;
+                    mColors[index] = color;
+                }
+            }
+
+            /*
+             * The vertices of a segment are consecutive in every row, so
+             * each row is mapped with a single call.
+             */
+            Matrix matrix = layout.getFoldMatrix(x);
+            int count = c - first;
+            if (mIsHorizontal) {
+                matrix.mapPoints(mVerts, first * 2, mVerts, first * 2, count);
+                int second = columns + 1 + first;
+                matrix.mapPoints(mVerts, second * 2, mVerts, second * 2, count);
+            } else {
+                matrix.mapPoints(mVerts, first * 4, mVerts, first * 4, count * 2);
+            }
+        }
+    }
+
+    /**
+     * @param isShaded false to draw the bitmap without the colors of the
+     *                 vertices, for canvases that ignore them.
+     */
+    void draw(Canvas canvas, Bitmap bitmap, Paint paint, boolean isShaded) {
+        int[] colors = isShaded ? mColors : null;
+        if (mIsHorizontal) {
+            canvas.drawBitmapMesh(bitmap, mColumns, 1, mVerts, 0, colors, 0, paint);
+        } else {
+            canvas.drawBitmapMesh(bitmap, 1, mColumns, mVerts, 0, colors, 0, paint);
+        }
+    }
+
+    private static int getStart(Rect rect, boolean isHorizontal) {
+        return isHorizontal ? rect.left : rect.top;
+    }
+
+    private static int getEnd(Rect rect, boolean isHorizontal) {
+        return isHorizontal ? rect.right : rect.bottom;
+    }
+
+}
@@ -0,0 +1,311 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Holds a bitmap copy of the folded content so that every fold can be drawn
+ * from the same pixels instead of re-running the child's draw traversal once
+ * per fold. Content that changes while the layout is folded is tracked as a
+ * dirty rectangle and only that part of the bitmap is drawn again. Bitmaps
+ * are borrowed from the shared FoldBitmapPool and only given back once the
+ * frames that may still draw them are done.
+ *
+ * The snapshot can also provide reduced levels of itself. Folds only get
+ * narrower along the folding axis, so every level halves the bitmap along
+ * that axis and keeps the full resolution across it.
+ *
+ * Starting with Android 8.0 a valid snapshot can be copied into a hardware
+ * bitmap that lives on the GPU, older versions only start the upload of the
+ * bitmap ahead of its first draw.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+class FoldSnapshot {
+
+    /**
+     * The smallest level is a quarter of the content along the folding axis
+     */
+    static final int MAX_LEVEL = 2;
+
+    private FoldBitmapPool mPool;
+    private final FoldBitmapRetirer mRetirer = new FoldBitmapRetirer();
+    private Bitmap mBitmap;
+    private final Canvas mCanvas = new Canvas();
+
+    private boolean mIsValid = false;
+
+    private static Bitmap.Config sHardwareConfig;
+    private Bitmap mHardwareBitmap;
+
+    /**
+     * Part of the bitmap, in content coordinates, that no longer matches the
+     * content. Empty when the bitmap is up to date.
+     */
+    private final Rect mDirtyRect = new Rect();
+    private final Rect mRefreshRect = new Rect();
+
+    private final Bitmap[] mLevels = new Bitmap[MAX_LEVEL + 1];
+    private final boolean[] mIsLevelValid = new boolean[MAX_LEVEL + 1];
+    private boolean mIsLevelHorizontal = true;
+    private final Canvas mLevelCanvas = new Canvas();
+    private final Paint mLevelPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Draws the view into the snapshot bitmap. The bitmap is only reallocated
+     * when the size of the view has changed since the last capture.
+     *
+     * @return false if the view has no size yet or the bitmap could not be
+     * allocated, in which case the caller should fall back to a live draw.
+     */
+    boolean capture(View view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            if (mPool == null) {
+                mPool = FoldBitmapPool.getInstance(view.getContext());
+            }
+            try {
+                mBitmap = mPool.get(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                /*
+                 * The pooled bitmaps are given up before trying once more.
+                 */
+                mPool.clear();
+                try {
+                    mBitmap = mPool.get(width, height, Bitmap.Config.ARGB_8888);
+                } catch (OutOfMemoryError again) {
+                    return false;
+                }
+            }
+            mCanvas.setBitmap(mBitmap);
+        } else {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        /*
+         * The snapshot is marked valid before drawing so that an invalidation
+         * raised by the view while it draws itself is not lost.
+         */
+        mIsValid = true;
+        mDirtyRect.setEmpty();
+        releaseHardwareBitmap();
+
+        int saveCount = mCanvas.save();
+        mCanvas.translate(-view.getScrollX(), -view.getScrollY());
+        view.draw(mCanvas);
+        mCanvas.restoreToCount(saveCount);
+        invalidateLevels();
+        return true;
+    }
+
+    /**
+     * Brings the snapshot up to date. Only the dirty rectangle is cleared and
+     * drawn again unless nothing has been captured yet or the view changed
+     * its size, in which case the whole view is captured.
+     */
+    boolean update(View view) {
+        if (!mIsValid || mBitmap == null
+                || mBitmap.getWidth() != view.getWidth()
+                || mBitmap.getHeight() != view.getHeight()) {
+            return capture(view);
+        }
+        if (mDirtyRect.isEmpty()) {
+            return true;
+        }
+
+        mRefreshRect.set(mDirtyRect);
+        mDirtyRect.setEmpty();
+        releaseHardwareBitmap();
+
+        int saveCount = mCanvas.save();
+        mCanvas.clipRect(mRefreshRect);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mCanvas.translate(-view.getScrollX(), -view.getScrollY());
+        view.draw(mCanvas);
+        mCanvas.restoreToCount(saveCount);
+        invalidateLevels();
+        return true;
+    }
+
+    /**
+     * Returns the snapshot reduced by 2^level along the folding axis. The
+     * level is built from the previous one the first time it is requested
+     * after the content changed.
+     *
+     * @return the reduced bitmap, or the full size one if the level could
+     * not be allocated.
+     */
+    Bitmap getBitmap(int level, boolean isHorizontal) {
+        if (level <= 0 || mBitmap == null) {
+            return mBitmap;
+        }
+        if (isHorizontal != mIsLevelHorizontal) {
+            mIsLevelHorizontal = isHorizontal;
+            invalidateLevels();
+        }
+        if (mIsLevelValid[level]) {
+            return mLevels[level];
+        }
+
+        Bitmap source = getBitmap(level - 1, isHorizontal);
+        if (source == mBitmap && level > 1) {
+            return mBitmap;
+        }
+
+        int width = isHorizontal ? Math.max(1, mBitmap.getWidth() >> level) : mBitmap.getWidth();
+        int height = isHorizontal ? mBitmap.getHeight() : Math.max(1, mBitmap.getHeight() >> level);
+
+        Bitmap target = mLevels[level];
+        if (target == null || target.getWidth() != width || target.getHeight() != height) {
+            if (target != null) {
+                mRetirer.retire(mPool, target);
+                mLevels[level] = null;
+            }
+            try {
+                target = mPool.get(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                return mBitmap;
+            }
+            mLevels[level] = target;
+        } else {
+            target.eraseColor(Color.TRANSPARENT);
+        }
+
+        mLevelCanvas.setBitmap(target);
+        mLevelCanvas.save();
+        mLevelCanvas.scale(width / (float) source.getWidth(), height / (float) source.getHeight());
+        mLevelCanvas.drawBitmap(source, 0, 0, mLevelPaint);
+        mLevelCanvas.restore();
+        mLevelCanvas.setBitmap(null);
+
+        mIsLevelValid[level] = true;
+        return target;
+    }
+
+    /**
+     * Moves the pixels of a valid snapshot to the GPU before they are drawn
+     * for the first time.
+     */
+    void upload() {
+        if (!isValid()) {
+            return;
+        }
+        if (!Util.IS_O_OR_LATER) {
+            mBitmap.prepareToDraw();
+            return;
+        }
+        if (mHardwareBitmap == null) {
+            if (sHardwareConfig == null) {
+                sHardwareConfig = Bitmap.Config.valueOf("HARDWARE");
+            }
+            try {
+                mHardwareBitmap = mBitmap.copy(sHardwareConfig, false);
+            } catch (OutOfMemoryError e) {
+                mHardwareBitmap = null;
+            }
+        }
+    }
+
+    /**
+     * @return the hardware copy of the snapshot, or null if there is none or
+     * the snapshot changed after it was made.
+     */
+    Bitmap getHardwareBitmap() {
+        return isValid() ? mHardwareBitmap : null;
+    }
+
+    /**
+     * Hardware bitmaps are immutable and cannot go back to the pool. They are
+     * left to the garbage collector rather than recycled, as the last frame
+     * may still reference them.
+     */
+    private void releaseHardwareBitmap() {
+        mHardwareBitmap = null;
+    }
+
+    private void invalidateLevels() {
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            mIsLevelValid[level] = false;
+        }
+    }
+
+    /**
+     * Marks the captured pixels as stale. The bitmap itself is kept so the
+     * next capture can reuse it.
+     */
+    void invalidate() {
+        mIsValid = false;
+    }
+
+    /**
+     * Marks a part of the captured pixels as stale.
+     *
+     * @param dirty the changed area in content coordinates.
+     */
+    void invalidate(Rect dirty) {
+        if (!hasContent()) {
+            return;
+        }
+        mDirtyRect.union(dirty);
+        if (!mDirtyRect.intersect(0, 0, mBitmap.getWidth(), mBitmap.getHeight())) {
+            mDirtyRect.setEmpty();
+        }
+    }
+
+    /**
+     * @return true if the bitmap holds a capture, even if parts of it are
+     * dirty.
+     */
+    boolean hasContent() {
+        return mIsValid && mBitmap != null;
+    }
+
+    /**
+     * @return true if the bitmap can be drawn as it is.
+     */
+    boolean isValid() {
+        return hasContent() && mDirtyRect.isEmpty();
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * Gives the snapshot bitmap back to the pool. Called once the fold settles
+     * so that the bitmap can be reused by the next fold of any layout, which
+     * only happens after the frames that may still draw it.
+     */
+    void release() {
+        mIsValid = false;
+        releaseHardwareBitmap();
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            mRetirer.retire(mPool, mBitmap);
+            mBitmap = null;
+        }
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            if (mLevels[level] != null) {
+                mRetirer.retire(mPool, mLevels[level]);
+                mLevels[level] = null;
+            }
+        }
+        invalidateLevels();
+    }
+
+}
@@ -0,0 +1,149 @@
+package ru.gdo.android.library.foldinglayout;
+
+/**
+ * Damped spring that moves a value towards a target. Every step solves the
+ * motion of the spring exactly for the elapsed time, so the result does not
+ * depend on the frame rate and long frames cannot make it unstable.
+ *
+ * The target can be changed at any moment, the value and the velocity are
+ * kept, so an interrupted fold turns around smoothly. The class has no
+ * dependency on Android and allocates nothing after it is created.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldSpring {
+
+    public static final float DEFAULT_STIFFNESS = 200f;
+    public static final float DEFAULT_DAMPING_RATIO = 1f;
+
+    /**
+     * The spring rests once it is closer to the target than this, in units
+     * of the value, and moves slower than this per second.
+     */
+    public static final float DEFAULT_REST_THRESHOLD = 0.001f;
+
+    private double mNaturalFrequency;
+    private double mDampingRatio;
+    private float mRestThreshold = DEFAULT_REST_THRESHOLD;
+
+    private double mValue = 0;
+    private double mVelocity = 0;
+    private double mTarget = 0;
+
+    public FoldSpring() {
+        this(DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+    }
+
+    /**
+     * @param stiffness    stiffness of the spring for a unit mass.
+     * @param dampingRatio 1 stops without overshooting as fast as possible,
+     *                     smaller values bounce and larger values creep.
+     */
+    public FoldSpring(float stiffness, float dampingRatio) {
+        setStiffness(stiffness);
+        setDampingRatio(dampingRatio);
+    }
+
+    public void setStiffness(float stiffness) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("Stiffness must be positive");
+        }
+        this.mNaturalFrequency = Math.sqrt(stiffness);
+    }
+
+    public void setDampingRatio(float dampingRatio) {
+        if (dampingRatio < 0) {
+            throw new IllegalArgumentException("Damping ratio must not be negative");
+        }
+        this.mDampingRatio = dampingRatio;
+    }
+
+    public void setRestThreshold(float threshold) {
+        this.mRestThreshold = threshold;
+    }
+
+    /**
+     * Moves the spring to the given state without changing its target.
+     */
+    public void setState(float value, float velocity) {
+        this.mValue = value;
+        this.mVelocity = velocity;
+    }
+
+    public void setTarget(float target) {
+        this.mTarget = target;
+    }
+
+    public float getValue() {
+        return (float) mValue;
+    }
+
+    public float getVelocity() {
+        return (float) mVelocity;
+    }
+
+    public float getTarget() {
+        return (float) mTarget;
+    }
+
+    public boolean isAtRest() {
+        return Math.abs(mValue - mTarget) < mRestThreshold
+                && Math.abs(mVelocity) < mRestThreshold;
+    }
+
+    /**
+     * Puts the spring on its target and stops it.
+     */
+    public void snapToTarget() {
+        mValue = mTarget;
+        mVelocity = 0;
+    }
+
+    /**
+     * Advances the spring by the given time.
+     */
+    public void step(float seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        double t = seconds;
+        double w0 = mNaturalFrequency;
+        double zeta = mDampingRatio;
+        double x = mValue - mTarget;
+        double v = mVelocity;
+
+        double position;
+        double velocity;
+        if (zeta < 1) {
+            double decay = zeta * w0;
+            double wd = w0 * Math.sqrt(1 - zeta * zeta);
+            double envelope = Math.exp(-decay * t);
+            double cos = Math.cos(wd * t);
+            double sin = Math.sin(wd * t);
+            position = envelope * (x * cos + (v + decay * x) / wd * sin);
+            velocity = envelope * (v * cos - (x * w0 * w0 + decay * v) / wd * sin);
+        } else if (zeta == 1) {
+            double envelope = Math.exp(-w0 * t);
+            double b = v + w0 * x;
+            position = (x + b * t) * envelope;
+            velocity = (b - w0 * (x + b * t)) * envelope;
+        } else {
+            double root = w0 * Math.sqrt(zeta * zeta - 1);
+            double r1 = -zeta * w0 + root;
+            double r2 = -zeta * w0 - root;
+            double c2 = (v - r1 * x) / (r2 - r1);
+            double c1 = x - c2;
+            double e1 = Math.exp(r1 * t);
+            double e2 = Math.exp(r2 * t);
+            position = c1 * e1 + c2 * e2;
+            velocity = c1 * r1 * e1 + c2 * r2 * e2;
+        }
+
+        mValue = mTarget + position;
+        mVelocity = velocity;
+    }
+
+}
@@ -0,0 +1,122 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Drives all the running fold animations of the process from a single
+ * Choreographer callback. Every animator gets the same frame time and
+ * updates its panel in one batch, and the layouts and invalidations they
+ * request are then handled by the single traversal that follows the
+ * animation callbacks of the frame.
+ *
+ * The callback is only posted while an animation runs. While a
+ * FoldFrameStepper is installed it replaces the Choreographer, and frames
+ * only happen when it steps them. Must only be used on the UI thread.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public final class FoldTicker implements Choreographer.FrameCallback {
+
+    private static FoldTicker sInstance;
+
+    private final ArrayList<FoldAnimator> mAnimators = new ArrayList<FoldAnimator>();
+    private Choreographer mChoreographer;
+    private boolean mIsPosted = false;
+
+    private FoldFrameStepper mStepper;
+
+    private FoldTicker() {
+    }
+
+    public static FoldTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new FoldTicker();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the time animations started now are measured from, on the
+     * same clock as the frame times.
+     */
+    long now() {
+        return mStepper != null ? mStepper.getTime() : System.nanoTime();
+    }
+
+    void setFrameStepper(FoldFrameStepper stepper) {
+        if (mIsPosted) {
+            mChoreographer.removeFrameCallback(this);
+            mIsPosted = false;
+        }
+        mStepper = stepper;
+        if (!mAnimators.isEmpty()) {
+            post();
+        }
+    }
+
+    /**
+     * @return the number of animators driven by the next frame.
+     */
+    public int getAnimatorCount() {
+        return mAnimators.size();
+    }
+
+    void add(FoldAnimator animator) {
+        if (!animator.mIsScheduled) {
+            animator.mIsScheduled = true;
+            mAnimators.add(animator);
+        }
+        post();
+    }
+
+    private void post() {
+        if (mIsPosted || mStepper != null) {
+            return;
+        }
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        mIsPosted = true;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mIsPosted = false;
+
+        /*
+         * Animators started by the listeners during this frame are appended
+         * and get their first frame on the next one.
+         */
+        int count = mAnimators.size();
+        for (int i = 0; i < count; i++) {
+            FoldAnimator animator = mAnimators.get(i);
+            if (animator.isRunning()) {
+                animator.doFrame(frameTimeNanos);
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < mAnimators.size(); i++) {
+            FoldAnimator animator = mAnimators.get(i);
+            if (animator.isRunning()) {
+                mAnimators.set(kept++, animator);
+            } else {
+                animator.mIsScheduled = false;
+            }
+        }
+        for (int i = mAnimators.size() - 1; i >= kept; i--) {
+            mAnimators.remove(i);
+        }
+
+        if (!mAnimators.isEmpty()) {
+            post();
+        }
+    }
+
+}
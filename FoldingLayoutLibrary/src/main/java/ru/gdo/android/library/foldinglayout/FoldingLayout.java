@@ -1,18 +1,19 @@
 package ru.gdo.android.library.foldinglayout;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Shader;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewParent;
 import android.widget.LinearLayout;
 
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldRenderer;
 import ru.gdo.android.library.foldinglayout.interfaces.IOnFoldListener;
 
 /**
@@ -33,11 +34,71 @@ public class FoldingLayout extends LinearLayout {
 	 * a live camera feed which continuously updates. Furthermore, the sepia
 	 * effect was removed from the bitmap variation of the demo to simplify the
 	 * logic when running with this workaround."
+	 *
+	 * The folds are drawn by an IFoldRenderer. The renderer is chosen at draw
+	 * time from what the canvas supports instead of the exact API level, so
+	 * the bitmap approach is used whenever the live renderer cannot run and
+	 * it is available on every API level through RENDER_MODE_SNAPSHOT.
 	 */
 
-    private final float SHADING_ALPHA = 0.8f;
-    private final float SHADING_FACTOR = 0.5f;
-    private final int NUM_OF_POLY_POINTS = 8;
+    /**
+     * Every fold re-dispatches the draw of the child. This is the default.
+     */
+    public static final int RENDER_MODE_LIVE = 0;
+
+    /**
+     * The child is captured into a bitmap once and all the folds are drawn
+     * from it. Parts of the child that invalidate are redrawn into the bitmap.
+     */
+    public static final int RENDER_MODE_SNAPSHOT = 1;
+
+    /**
+     * Snapshot mode that samples a reduced copy of the snapshot when the
+     * folds are narrow enough, so less pixels are read the more the layout
+     * is folded.
+     */
+    public static final int RENDER_MODE_MIPMAP = 2;
+
+    /**
+     * Snapshot mode that draws all the folds and their shading with a single
+     * drawBitmapMesh call.
+     */
+    public static final int RENDER_MODE_MESH = 3;
+
+    /**
+     * The renderer is chosen on every frame from the canvas and the content,
+     * see AutoFoldRenderer. It has to be selected explicitly, for example
+     * with the foldRenderMode attribute of FoldingPanelLayout.
+     */
+    public static final int RENDER_MODE_AUTO = 4;
+
+    /**
+     * The folds are drawn live while the child is promoted to a hardware
+     * layer.
+     */
+    public static final int RENDER_MODE_HARDWARE_LAYER = 5;
+
+    /**
+     * The child is recorded into a Picture once and the recording is replayed
+     * in every fold.
+     */
+    public static final int RENDER_MODE_PICTURE = 6;
+
+    /**
+     * Like RENDER_MODE_SNAPSHOT, but the snapshot is rasterized on a worker
+     * thread and the folds are drawn live until it is ready. Changes of the
+     * child are rasterized on the worker as well, while the folds keep
+     * showing the previous snapshot.
+     */
+    public static final int RENDER_MODE_ASYNC_SNAPSHOT = 7;
+
+    /**
+     * A renderer supplied with setRenderer.
+     */
+    public static final int RENDER_MODE_CUSTOM = -1;
+
+    static final float SHADING_ALPHA = 0.8f;
+    static final float SHADING_FACTOR = 0.5f;
 
     private Rect[] mFoldRectArray;
 
@@ -55,28 +116,85 @@ public class FoldingLayout extends LinearLayout {
     private int mOriginalWidth = 0;
     private int mOriginalHeight = 0;
 
-    private float mFoldMaxWidth = 0;
-    private float mFoldMaxHeight = 0;
     private float mFoldDrawWidth = 0;
     private float mFoldDrawHeight = 0;
 
     private boolean mIsFoldPrepared = false;
     private boolean mShouldDraw = true;
 
-    private Paint mSolidShadow;
-    private Paint mGradientShadow;
-    private LinearGradient mShadowLinearGradient;
-    private Matrix mShadowGradientMatrix;
+    /**
+     * Hash of the inputs of the last calculated fold. A new fold factor that
+     * ends up with the same hash moves the folds by less than a pixel, so the
+     * layout is not invalidated for it.
+     */
+    private long mGeometryFingerprint = 0;
+
+    /**
+     * True when the matrices have to be calculated again before the next
+     * draw. They are only calculated once per frame however often the fold
+     * factor, the extent or the size changed in between.
+     */
+    private boolean mIsGeometryDirty = true;
+
+    private SharedFoldResources mResources;
+    private final Paint mSolidShadow = new Paint();
+    private final Paint mGradientShadow = new Paint();
 
-    private float[] mSrc;
-    private float[] mDst;
+    private final FoldGeometry mGeometry = new FoldGeometry();
+    private final float[] mFoldDrawSize = new float[2];
+    private int mKeyframeCount = 0;
+    private int[] mStrips;
+    private float[] mQuads;
+    private float[] mMatrixValues;
+    private final float[] mMatrixBuffer = new float[FoldGeometry.MATRIX_SIZE];
 
     private IOnFoldListener mFoldListener;
 
     private float mPreviousFoldFactor = 0;
 
-    private Bitmap mFullBitmap;
-    private Rect mDstRect;
+    private int mRenderMode = RENDER_MODE_LIVE;
+    private IFoldRenderer mRenderer = new LiveFoldRenderer();
+    private final IFoldRenderer mLiveRenderer = new LiveFoldRenderer();
+    private IFoldRenderer mFallbackRenderer;
+
+    /**
+     * Renderer that drew the last frame, which is the fallback when the
+     * selected renderer is not supported by the canvas.
+     */
+    private IFoldRenderer mDrawingRenderer;
+
+    private boolean mIsFolding = false;
+    private boolean mIsPreparePending = false;
+
+    private final FoldLayerController mLayerController = new FoldLayerController();
+
+    private Rect[] mContentRectArray;
+    private int mShadingAlpha = 0;
+    private final Rect mInvalidatedRect = new Rect();
+
+    /**
+     * Size of the content when the panel is completely unfolded. Renderers
+     * that keep the content size lay the child out with this size for the
+     * whole fold, so it does not need to be measured, laid out and captured
+     * again on every frame.
+     */
+    private int mUnfoldedWidth = 0;
+    private int mUnfoldedHeight = 0;
+
+    /**
+     * Size along the folding axis the folds are drawn into, or -1 to use the
+     * size of the layout.
+     */
+    private int mFoldExtent = -1;
+
+    /**
+     * True while the layout is collapsed and its child was neither measured
+     * nor laid out. The measure specs are kept to lay the child out as soon
+     * as the layout starts to unfold.
+     */
+    private boolean mIsContentSkipped = false;
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
 
     private boolean mFirstLayout = true;
 
@@ -98,34 +216,193 @@ public class FoldingLayout extends LinearLayout {
         mNumberOfFolds = 2;
     }
 
+    /*
+     * Borrows the strips and the keyframes of the reference size from the
+     * layouts with the same configuration. Only an attached layout holds on
+     * to them, a detached one computes its folds on its own until it is
+     * attached again.
+     */
+    private void updateResources(int referenceWidth, int referenceHeight) {
+        if (getWindowToken() == null || referenceWidth <= 0 || referenceHeight <= 0) {
+            releaseResources();
+            return;
+        }
+        if (mResources != null && mResources.matches(referenceWidth, referenceHeight,
+                mNumberOfFolds, mAnchorFactor, mIsHorizontal, mKeyframeCount)) {
+            return;
+        }
+        releaseResources();
+        mResources = SharedFoldResources.acquire(referenceWidth, referenceHeight,
+                mNumberOfFolds, mAnchorFactor, mIsHorizontal, mKeyframeCount);
+    }
+
+    private void releaseResources() {
+        if (mResources != null) {
+            mResources.release();
+            mResources = null;
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         this.mFirstLayout = true;
-
+        mIsGeometryDirty = true;
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         this.mFirstLayout = true;
+        mLayerController.release();
+        releaseRenderers();
+        releaseResources();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        View child = getChildAt(0);
-        measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
+
+        /* Nothing of the child can be seen while the layout is collapsed. */
+        mIsContentSkipped = isCollapsed(MeasureSpec.getSize(
+                mIsHorizontal ? widthMeasureSpec : heightMeasureSpec));
+        if (!mIsContentSkipped) {
+            measureContent(widthMeasureSpec, heightMeasureSpec);
+        }
         setMeasuredDimension(widthMeasureSpec, heightMeasureSpec);
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        calculateMatrices();
-        View child = getChildAt(0);
-        child.layout(l, t, r, b);
+        mIsGeometryDirty = true;
+        if (!mIsContentSkipped) {
+            layoutContent(l, t, r, b);
+        }
         this.mFirstLayout = false;
     }
 
+    private void measureContent(int widthMeasureSpec, int heightMeasureSpec) {
+        View child = getChildAt(0);
+        if (hasStableContentSize()) {
+            measureChild(child,
+                    MeasureSpec.makeMeasureSpec(mUnfoldedWidth, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mUnfoldedHeight, MeasureSpec.EXACTLY));
+        } else {
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    private void layoutContent(int l, int t, int r, int b) {
+        View child = getChildAt(0);
+        if (hasStableContentSize()) {
+            child.layout(l, t, l + child.getMeasuredWidth(), t + child.getMeasuredHeight());
+        } else {
+            child.layout(l, t, r, b);
+        }
+    }
+
+    /**
+     * Measures and lays out the child that was skipped while the layout was
+     * collapsed, with the last measure specs and the current bounds of this
+     * layout, so unfolding does not have to wait for a layout pass.
+     */
+    private void restoreSkippedContent() {
+        if (!mIsContentSkipped || getChildAt(0) == null) {
+            return;
+        }
+        mIsContentSkipped = false;
+        measureContent(mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+        layoutContent(getLeft(), getTop(), getRight(), getBottom());
+    }
+
+    /**
+     * @return true if the layout is folded completely and has no size along
+     * its folding axis, like the main view of a collapsed FoldingPanelLayout.
+     * The child is then not measured, laid out or drawn at all. A layout that
+     * keeps its size still draws its folds at the fold factor 0.
+     */
+    public boolean isCollapsed() {
+        return isCollapsed(mIsHorizontal ? getWidth() : getHeight());
+    }
+
+    private boolean isCollapsed(int axisSize) {
+        return mIsFoldPrepared && mFoldFactor == 0 && axisSize == 0;
+    }
+
+    /**
+     * @return true if the child is laid out with its unfolded size while the
+     * folding layout itself shrinks, in which case the segments of the
+     * content are larger than the segments of the layout.
+     */
+    public boolean hasStableContentSize() {
+        return mRenderer.keepsContentSize() && mUnfoldedWidth > 0 && mUnfoldedHeight > 0;
+    }
+
+    /*
+     * When this method is reached the dirty rectangle has already been
+     * offset into the coordinates of the child.
+     */
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        if (isCapturingContent()) {
+            onContentInvalidated(dirty);
+        }
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    /**
+     * Hardware accelerated invalidations skip invalidateChildInParent starting
+     * with Android 8.0 and go through this method instead. Only a captured
+     * content needs to know about them, in which case this layout draws the
+     * capture and is invalidated itself. Otherwise the invalidation takes the
+     * normal path, which only redraws the display list of the target.
+     */
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        if (!isCapturingContent()) {
+            super.onDescendantInvalidated(child, target);
+            return;
+        }
+        mInvalidatedRect.set(0, 0, target.getWidth(), target.getHeight());
+
+        /*
+         * Walks up from the invalidated view to the child so that the bounds
+         * of the view end up in the coordinates of the child.
+         */
+        View view = target;
+        while (view != child) {
+            mInvalidatedRect.offset(view.getLeft(), view.getTop());
+            ViewParent parent = view.getParent();
+            if (!(parent instanceof View)) {
+                mInvalidatedRect.set(0, 0, child.getWidth(), child.getHeight());
+                break;
+            }
+            view = (View) parent;
+            mInvalidatedRect.offset(-view.getScrollX(), -view.getScrollY());
+        }
+        onContentInvalidated(mInvalidatedRect);
+        invalidate();
+    }
+
+    /*
+     * True while a change of the content has to reach a renderer that drew
+     * it into a capture, or the layer controller that watches the content
+     * for changes while it is promoted.
+     */
+    private boolean isCapturingContent() {
+        return mLayerController.isPromoted() || mRenderer.hasCapturedContent()
+                || (mFallbackRenderer != null && mFallbackRenderer.hasCapturedContent());
+    }
+
+    private void onContentInvalidated(Rect dirty) {
+        mLayerController.onContentInvalidated();
+        mRenderer.onContentInvalidated(this, dirty);
+        if (mFallbackRenderer != null) {
+            mFallbackRenderer.onContentInvalidated(this, dirty);
+        }
+    }
+
     /**
      * The custom exception to be thrown so as to limit the number of views in
      * this layout to at most one.
@@ -158,9 +435,195 @@ public class FoldingLayout extends LinearLayout {
     }
 
     /**
-     * Sets the fold factor of the folding view and updates all the
-     * corresponding matrices and values to account for the new fold factor.
-     * Once that is complete, it redraws itself with the new fold.
+     * Selects how the folds are drawn, one of the RENDER_MODE_* constants
+     * other than RENDER_MODE_CUSTOM.
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != mRenderMode) {
+            applyRenderer(renderMode, createRenderer(renderMode));
+        }
+    }
+
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Replaces the renderer of the folds, which allows a strategy that is not
+     * part of the library to be used.
+     */
+    public void setRenderer(IFoldRenderer renderer) {
+        if (renderer != mRenderer) {
+            applyRenderer(RENDER_MODE_CUSTOM, renderer);
+        }
+    }
+
+    public IFoldRenderer getRenderer() {
+        return mRenderer;
+    }
+
+    /**
+     * Promotes the child to a hardware layer until releaseContentLayer is
+     * called. Nothing happens when the renderer draws a capture instead of
+     * the child, as the layer would never be used, when the size of the child
+     * changes with the fold, as the layer would then be rebuilt on every
+     * frame, or when the child kept changing during the current fold.
+     */
+    public void promoteContentLayer() {
+        IFoldRenderer renderer = mDrawingRenderer != null ? mDrawingRenderer : mRenderer;
+        if (renderer.drawsContent() && hasConstantContentSize()) {
+            mLayerController.promote(getChildAt(0));
+        }
+    }
+
+    /**
+     * The child keeps its size for the whole fold when it is laid out with
+     * its unfolded size, or when only the fold extent moves while the layout
+     * keeps its size.
+     */
+    private boolean hasConstantContentSize() {
+        return hasStableContentSize() || mFoldExtent >= 0;
+    }
+
+    public void releaseContentLayer() {
+        mLayerController.release();
+    }
+
+    /**
+     * Lets the renderer capture and upload the child as soon as the UI thread
+     * is idle, which is before the first frame of an animation that is about
+     * to start. Call it right before starting the animation.
+     */
+    public void prepareContent() {
+        if (mIsPreparePending || mIsFolding) {
+            return;
+        }
+        mIsPreparePending = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                mIsPreparePending = false;
+                if (getWindowToken() != null && getChildAt(0) != null) {
+                    restoreSkippedContent();
+                    mRenderer.onFoldPrepare(FoldingLayout.this);
+                }
+                return false;
+            }
+        });
+    }
+
+    private void applyRenderer(int renderMode, IFoldRenderer renderer) {
+        releaseRenderers();
+        mLayerController.release();
+        mDrawingRenderer = null;
+        mRenderMode = renderMode;
+        mRenderer = renderer;
+        if (mIsFolding) {
+            mRenderer.onFoldStart(this);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    private static IFoldRenderer createRenderer(int renderMode) {
+        switch (renderMode) {
+            case RENDER_MODE_LIVE:
+                return new LiveFoldRenderer();
+            case RENDER_MODE_SNAPSHOT:
+                return new SnapshotFoldRenderer();
+            case RENDER_MODE_MIPMAP:
+                return new SnapshotFoldRenderer(true);
+            case RENDER_MODE_MESH:
+                return new MeshFoldRenderer();
+            case RENDER_MODE_HARDWARE_LAYER:
+                return new HardwareLayerFoldRenderer();
+            case RENDER_MODE_PICTURE:
+                return new PictureFoldRenderer();
+            case RENDER_MODE_ASYNC_SNAPSHOT:
+                return new AsyncSnapshotFoldRenderer();
+            default:
+                return new AutoFoldRenderer();
+        }
+    }
+
+    /**
+     * The snapshot renderer takes over when the selected renderer is not
+     * supported by the canvas, for example the live renderer on Android 4.3
+     * with hardware acceleration.
+     */
+    private IFoldRenderer getFallbackRenderer() {
+        if (mFallbackRenderer == null) {
+            mFallbackRenderer = new SnapshotFoldRenderer();
+            if (mIsFolding) {
+                mFallbackRenderer.onFoldStart(this);
+            }
+        }
+        return mFallbackRenderer;
+    }
+
+    private void releaseRenderers() {
+        mRenderer.release();
+        if (mFallbackRenderer != null) {
+            mFallbackRenderer.release();
+            mFallbackRenderer = null;
+        }
+    }
+
+    /**
+     * Precomputes the geometry at the given number of evenly spaced fold
+     * factors, so every frame interpolates between two of them instead of
+     * computing the folds. The table is computed at the unfolded size and
+     * only used while the folds are drawn at that size, frames of a layout
+     * or fold extent that shrinks with the fold are computed exactly. It is
+     * only rebuilt when the unfolded size or the configuration of the folds
+     * changes.
+     *
+     * @param count number of keyframes, 0 computes every frame exactly.
+     */
+    public void setKeyframeCount(int count) {
+        if (count != mKeyframeCount) {
+            mKeyframeCount = count;
+            mIsGeometryDirty = true;
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the size of the content when the layout is completely unfolded.
+     * It is used by the renderers that keep the content size to lay the child
+     * out with its real size regardless of how far the layout is folded.
+     */
+    public void setUnfoldedSize(int width, int height) {
+        if (width != mUnfoldedWidth || height != mUnfoldedHeight) {
+            mUnfoldedWidth = width;
+            mUnfoldedHeight = height;
+            forceLayout();
+        }
+    }
+
+    /**
+     * Limits the folds to the given size along the folding axis while the
+     * layout itself keeps its size. It allows a parent to animate a fold
+     * without laying this layout out again on every frame.
+     *
+     * @param extent size in pixels, or -1 to fold over the whole layout.
+     */
+    public void setFoldExtent(int extent) {
+        if (extent != mFoldExtent) {
+            mFoldExtent = extent;
+            invalidateGeometry();
+        }
+    }
+
+    public int getFoldExtent() {
+        return mFoldExtent;
+    }
+
+    /**
+     * Sets the fold factor of the folding view and redraws it with the new
+     * fold. The matrices are calculated with the next draw without a layout
+     * pass, and the view is only invalidated when the fold moves by about a
+     * pixel or more.
      */
     public void setFoldFactor(float foldFactor) {
         if (foldFactor > 1) {
@@ -171,10 +634,45 @@ public class FoldingLayout extends LinearLayout {
         }
         if (foldFactor != mFoldFactor) {
             mFoldFactor = foldFactor;
+            if (foldFactor > 0) {
+                restoreSkippedContent();
+            }
+            updateFoldingState();
+            invalidateGeometry();
+        }
+    }
+
+    /**
+     * Lets the next draw calculate the matrices again if the inputs of the
+     * fold changed enough since they were last calculated.
+     */
+    private void invalidateGeometry() {
+        if (mIsGeometryDirty || fingerprint() != mGeometryFingerprint) {
+            mIsGeometryDirty = true;
             invalidate();
         }
     }
 
+    /**
+     * Tells the renderers when the layout leaves or reaches one of its rest
+     * states, so they can prepare and release what they need for a fold.
+     */
+    private void updateFoldingState() {
+        boolean isFolding = mIsFoldPrepared && mFoldFactor > 0 && mFoldFactor < 1;
+        if (isFolding == mIsFolding) {
+            return;
+        }
+        mIsFolding = isFolding;
+        if (isFolding) {
+            mRenderer.onFoldStart(this);
+        } else {
+            mRenderer.onFoldEnd(this);
+            if (mFallbackRenderer != null) {
+                mFallbackRenderer.onFoldEnd(this);
+            }
+        }
+    }
+
     public void setFoldingOrientation(int orientation) {
         if (orientation != mOrientation) {
             mOrientation = orientation;
@@ -208,13 +706,28 @@ public class FoldingLayout extends LinearLayout {
         return mFoldFactor;
     }
 
+    /**
+     * @return the hash of the inputs of the last calculated fold.
+     */
+    long getGeometryFingerprint() {
+        return mGeometryFingerprint;
+    }
+
+    /**
+     * @return the quads of the last calculated fold, QUAD_SIZE values per
+     * fold. The array is reused for the next fold.
+     */
+    float[] getFoldQuads() {
+        return mQuads;
+    }
+
     public int getNumberOfFolds() {
         return mNumberOfFolds;
     }
 
     private void updateFold() {
         prepareFold(mOrientation, mAnchorFactor, mNumberOfFolds);
-        calculateMatrices();
+        mIsGeometryDirty = true;
         invalidate();
     }
 
@@ -230,45 +743,42 @@ public class FoldingLayout extends LinearLayout {
      */
     private void prepareFold(int orientation, float anchorFactor,
                              int numberOfFolds) {
-        mSrc = new float[NUM_OF_POLY_POINTS];
-        mDst = new float[NUM_OF_POLY_POINTS];
-
-        mDstRect = new Rect();
-
         mFoldFactor = 0;
         mPreviousFoldFactor = 0;
 
         mIsFoldPrepared = false;
 
-        mSolidShadow = new Paint();
-        mGradientShadow = new Paint();
-
         mOrientation = orientation;
         mIsHorizontal = (orientation == LinearLayout.HORIZONTAL);
 
-        if (mIsHorizontal) {
-            mShadowLinearGradient = new LinearGradient(0, 0, SHADING_FACTOR, 0,
-                    Color.BLACK, Color.TRANSPARENT, Shader.TileMode.CLAMP);
-        } else {
-            mShadowLinearGradient = new LinearGradient(0, 0, 0, SHADING_FACTOR,
-                    Color.BLACK, Color.TRANSPARENT, Shader.TileMode.CLAMP);
-        }
-
-        mGradientShadow.setStyle(Paint.Style.FILL);
-        mGradientShadow.setShader(mShadowLinearGradient);
-        mShadowGradientMatrix = new Matrix();
-
         mAnchorFactor = anchorFactor;
         mNumberOfFolds = numberOfFolds;
 
+        /*
+         * The gradient is shared by every layout with the same orientation,
+         * the strips and the keyframes are borrowed again for the new
+         * configuration on the next calculation.
+         */
+        mGradientShadow.setStyle(Paint.Style.FILL);
+        mGradientShadow.setShader(SharedFoldResources.getGradient(mIsHorizontal));
+        releaseResources();
+
         mFoldRectArray = new Rect[mNumberOfFolds];
+        mContentRectArray = new Rect[mNumberOfFolds];
         mMatrix = new Matrix[mNumberOfFolds];
 
         for (int x = 0; x < mNumberOfFolds; x++) {
             mMatrix[x] = new Matrix();
+            mFoldRectArray[x] = new Rect();
+            mContentRectArray[x] = new Rect();
         }
 
+        mStrips = new int[mNumberOfFolds * FoldGeometry.STRIP_SIZE];
+        mQuads = new float[mNumberOfFolds * FoldGeometry.QUAD_SIZE];
+        mMatrixValues = new float[mNumberOfFolds * FoldGeometry.MATRIX_SIZE];
+
         mIsFoldPrepared = true;
+        updateFoldingState();
     }
 
     /*
@@ -278,6 +788,8 @@ public class FoldingLayout extends LinearLayout {
     private void calculateMatrices() {
 
         mShouldDraw = true;
+        mIsGeometryDirty = false;
+        mGeometryFingerprint = fingerprint();
 
         if (!mIsFoldPrepared) {
             return;
@@ -292,6 +804,13 @@ public class FoldingLayout extends LinearLayout {
             return;
         }
 
+        /* A collapsed layout draws nothing, so there is nothing to compute. */
+        if (isCollapsed()) {
+            mShouldDraw = false;
+            mPreviousFoldFactor = 0;
+            return;
+        }
+
         if (mFoldFactor == 1 && mPreviousFoldFactor > 0
                 && mFoldListener != null) {
             mFoldListener.onEndFold();
@@ -304,200 +823,185 @@ public class FoldingLayout extends LinearLayout {
 
         mPreviousFoldFactor = mFoldFactor;
 
-		/*
-		 * Reset all the transformation matrices back to identity before
-		 * computing the new transformation
-		 */
-        for (int x = 0; x < mNumberOfFolds; x++) {
-            mMatrix[x].reset();
-        }
-
-        float cTranslationFactor = 1;
-
-        this.mOriginalWidth = this.getRight() - this.getLeft();
-        this.mOriginalHeight = this.getBottom() - this.getTop();
-
-        int delta = Math.round(mIsHorizontal ?
-                ((float) mOriginalWidth) / ((float) mNumberOfFolds) :
-                ((float)mOriginalHeight) / ((float) mNumberOfFolds));
+        int layoutWidth = this.getRight() - this.getLeft();
+        int layoutHeight = this.getBottom() - this.getTop();
 
-		/*
-		 * Loops through the number of folds and segments the full layout into a
-		 * number of smaller equal components. If the number of folds is odd,
-		 * then one of the components will be smaller than all the rest. Note
-		 * that deltap below handles the calculation for an odd number of folds.
-		 */
-        for (int x = 0; x < mNumberOfFolds; x++) {
+        this.mOriginalWidth = layoutWidth;
+        this.mOriginalHeight = layoutHeight;
+        if (mFoldExtent >= 0) {
             if (mIsHorizontal) {
-                int deltap = (x + 1) * delta > mOriginalWidth ? mOriginalWidth - x * delta : delta;
-                mFoldRectArray[x] = new Rect(x * delta, 0, x * delta + deltap,
-                        mOriginalHeight);
+                mOriginalWidth = Math.min(mFoldExtent, layoutWidth);
             } else {
-                int deltap = (x == mNumberOfFolds -1) ?  mOriginalHeight - (x * delta) : (x + 1) * delta > mOriginalHeight ? mOriginalHeight - x * delta : delta;
-                mFoldRectArray[x] = new Rect(0, x * delta, mOriginalWidth, x * delta
-                        + deltap);
+                mOriginalHeight = Math.min(mFoldExtent, layoutHeight);
             }
         }
 
-        if (mIsHorizontal) {
-            mFoldMaxHeight = mOriginalHeight;
-            mFoldMaxWidth = delta;
+        /*
+         * The resources are kept for the unfolded size, which stays the same
+         * while the layout or its fold extent shrinks, so they are not built
+         * again on every frame of such a fold.
+         */
+        boolean hasUnfoldedSize = mUnfoldedWidth > 0 && mUnfoldedHeight > 0;
+        updateResources(hasUnfoldedSize ? mUnfoldedWidth : layoutWidth,
+                hasUnfoldedSize ? mUnfoldedHeight : layoutHeight);
+
+        segmentFolds(mFoldRectArray, mOriginalWidth, mOriginalHeight);
+
+        View child = getChildAt(0);
+        if (child != null && hasStableContentSize()) {
+            segmentFolds(mContentRectArray, child.getMeasuredWidth(), child.getMeasuredHeight());
         } else {
-            mFoldMaxHeight = delta;
-            mFoldMaxWidth = mOriginalWidth;
+            segmentFolds(mContentRectArray, layoutWidth, layoutHeight);
         }
 
-        float cTF = (1 - mFoldFactor);
+        boolean isVisible;
+        FoldKeyframes keyframes = mResources != null ? mResources.getKeyframes() : null;
+        if (keyframes != null) {
+            isVisible = keyframes.compute(mGeometry, mOriginalWidth, mOriginalHeight,
+                    mFoldFactor, mQuads, mMatrixValues, mFoldDrawSize);
+            mFoldDrawWidth = mFoldDrawSize[0];
+            mFoldDrawHeight = mFoldDrawSize[1];
+        } else {
+            isVisible = mGeometry.compute(mOriginalWidth, mOriginalHeight, mNumberOfFolds,
+                    mAnchorFactor, mIsHorizontal, mFoldFactor, mQuads, mMatrixValues);
+            mFoldDrawWidth = mGeometry.getFoldDrawWidth();
+            mFoldDrawHeight = mGeometry.getFoldDrawHeight();
+        }
 
-        float translatedDistance = mIsHorizontal ?
-                mOriginalWidth * cTF :
-                mOriginalHeight * cTF;
+        if (!isVisible) {
+            mShouldDraw = false;
+            return;
+        }
 
-        float translatedDistancePerFold = Math.round(translatedDistance
-                / mNumberOfFolds);
+        /* Sets the shadow and bitmap transformation matrices. */
+        for (int x = 0; x < mNumberOfFolds; x++) {
+            System.arraycopy(mMatrixValues, x * FoldGeometry.MATRIX_SIZE,
+                    mMatrixBuffer, 0, FoldGeometry.MATRIX_SIZE);
+            mMatrix[x].setValues(mMatrixBuffer);
+        }
 
 		/*
-		 * For an odd number of folds, the rounding error may cause the
-		 * translatedDistancePerFold to be grater than the max fold width or
-		 * height.
+		 * The shadows on the folds are split into two parts: Solid shadows and
+		 * gradients. Every other fold has a solid shadow which overlays the
+		 * whole fold. Similarly, the folds in between these alternating folds
+		 * also have an overlaying shadow. However, it is a gradient that takes
+		 * up part of the fold as opposed to a solid shadow overlaying the whole
+		 * fold.
 		 */
-        mFoldDrawWidth = mFoldMaxWidth < translatedDistancePerFold ? translatedDistancePerFold
-                : mFoldMaxWidth;
-        mFoldDrawHeight = mFoldMaxHeight < translatedDistancePerFold ? translatedDistancePerFold
-                : mFoldMaxHeight;
 
-		/*
-		 * The size of some object is always inversely proportional to the
-		 * distance it is away from the viewpoint. The constant can be varied to
-		 * to affect the amount of perspective.
-		 */
-        float scaleFactor = 1.0f - (0.10f * (1 - this.mFoldFactor)) ;
+        mShadingAlpha = FoldGeometry.shadingAlpha(mFoldFactor, SHADING_ALPHA);
+    }
 
-        float scaledWidth, scaledHeight, bottomScaledPoint, topScaledPoint, rightScaledPoint, leftScaledPoint;
+    /*
+     * Hashes everything the fold is calculated from: the size of the layout
+     * and of the content, the fold extent and the fold factor. The folds
+     * move by at most the size along the folding axis over the whole range
+     * of fold factors, and the shading has 255 steps, so the fold factor is
+     * quantised to the larger of both and a change within one step moves
+     * nothing by a whole pixel. The rest states are hashed exactly.
+     */
+    private long fingerprint() {
+        int width = getWidth();
+        int height = getHeight();
+        int axisSize = mIsHorizontal ?
+                Math.max(width, mUnfoldedWidth) :
+                Math.max(height, mUnfoldedHeight);
+        int steps = Math.max(axisSize, 255);
+
+        long hash = mIsFoldPrepared ? 17 : 19;
+        hash = hash * 31 + width;
+        hash = hash * 31 + height;
+        hash = hash * 31 + mUnfoldedWidth;
+        hash = hash * 31 + mUnfoldedHeight;
+        hash = hash * 31 + mFoldExtent;
+        hash = hash * 31 + Math.round(mFoldFactor * steps);
+        hash = hash * 31 + (mFoldFactor == 0 ? 1 : mFoldFactor == 1 ? 2 : 0);
+        return hash;
+    }
 
-        if (mIsHorizontal) {
-            scaledWidth = mFoldDrawWidth * cTranslationFactor;
-            scaledHeight = mFoldDrawHeight * scaleFactor;
+    /*
+     * Segments the given area into a number of smaller equal components. If
+     * the number of folds is odd, then one of the components will be smaller
+     * than all the rest.
+     */
+    private void segmentFolds(Rect[] rects, int width, int height) {
+        int[] strips = mStrips;
+        if (mResources != null && mResources.hasSize(width, height)) {
+            strips = mResources.getStrips();
         } else {
-            scaledWidth = mFoldDrawWidth * scaleFactor;
-            scaledHeight = mFoldDrawHeight * cTranslationFactor;
+            FoldGeometry.segment(width, height, mNumberOfFolds, mIsHorizontal, strips);
         }
-
-        topScaledPoint = (mFoldDrawHeight - scaledHeight) / 2.0f;
-        bottomScaledPoint = topScaledPoint + scaledHeight;
-
-        leftScaledPoint = (mFoldDrawWidth - scaledWidth) / 2.0f;
-        rightScaledPoint = leftScaledPoint + scaledWidth;
-
-        float anchorPoint = mIsHorizontal ? mAnchorFactor * mOriginalWidth
-                : mAnchorFactor * mOriginalHeight;
-
-		/* The fold along which the anchor point is located. */
-        float midFold = mIsHorizontal ? (anchorPoint / mFoldDrawWidth)
-                : anchorPoint / mFoldDrawHeight;
-
-        mSrc[0] = 0;
-        mSrc[1] = 0;
-        mSrc[2] = 0;
-        mSrc[3] = mFoldDrawHeight;
-        mSrc[4] = mFoldDrawWidth;
-        mSrc[5] = 0;
-        mSrc[6] = mFoldDrawWidth;
-        mSrc[7] = mFoldDrawHeight;
-
-		/*
-		 * Computes the transformation matrix for each fold using the values
-		 * calculated above.
-		 */
         for (int x = 0; x < mNumberOfFolds; x++) {
+            int i = x * FoldGeometry.STRIP_SIZE;
+            rects[x].set(strips[i], strips[i + 1], strips[i + 2], strips[i + 3]);
+        }
+    }
 
-            boolean isEven = (x % 2 == 0);
-
-            if (mIsHorizontal) {
-                mDst[0] = (anchorPoint > x * mFoldDrawWidth) ? anchorPoint
-                        + (x - midFold) * scaledWidth : anchorPoint
-                        - (midFold - x) * scaledWidth;
-                mDst[1] = isEven ? 0 : topScaledPoint;
-                mDst[2] = mDst[0];
-                mDst[3] = isEven ? mFoldDrawHeight : bottomScaledPoint;
-                mDst[4] = (anchorPoint > (x + 1) * mFoldDrawWidth) ? anchorPoint
-                        + (x + 1 - midFold) * scaledWidth
-                        : anchorPoint - (midFold - x - 1) * scaledWidth;
-                mDst[5] = isEven ? topScaledPoint : 0;
-                mDst[6] = mDst[4];
-                mDst[7] = isEven ? bottomScaledPoint : mFoldDrawHeight;
+    public Matrix getFoldMatrix(int fold) {
+        return mMatrix[fold];
+    }
 
-            } else {
-                mDst[0] = isEven ? 0 : leftScaledPoint;
-                mDst[1] = (anchorPoint > x * mFoldDrawHeight) ? anchorPoint
-                        + (x - midFold) * scaledHeight :
-                        anchorPoint - (midFold - x) * scaledHeight;
-                mDst[2] = isEven ? leftScaledPoint : 0;
-                mDst[3] = (anchorPoint > (x + 1) * mFoldDrawHeight) ? anchorPoint
-                        + (x + 1 - midFold) * scaledHeight :
-                        anchorPoint - (midFold - x - 1) * scaledHeight;
-                mDst[4] = isEven ? mFoldDrawWidth : rightScaledPoint;
-                mDst[5] = mDst[1];
-                mDst[6] = isEven ? rightScaledPoint : mFoldDrawWidth;
-                mDst[7] = mDst[3];
-            }
+    /**
+     * @return the segment of this layout covered by the fold before it is
+     * transformed by its matrix.
+     */
+    public Rect getFoldRect(int fold) {
+        return mFoldRectArray[fold];
+    }
 
-			/*
-			 * Pixel fractions are present for odd number of folds which need to
-			 * be rounded off here.
-			 */
-            for (int y = 0; y < 8; y++) {
-                mDst[y] = Math.round(mDst[y]);
-            }
+    /**
+     * @return the segment of the child that is drawn into the fold.
+     */
+    public Rect getContentRect(int fold) {
+        return mContentRectArray[fold];
+    }
 
-			/*
-			 * If it so happens that any of the folds have reached a point where
-			 * the width or height of that fold is 0, then nothing needs to be
-			 * drawn onto the canvas because the view is essentially completely
-			 * folded.
-			 */
-            if (mIsHorizontal) {
-                if (mDst[4] <= mDst[0] || mDst[6] <= mDst[2]) {
-                    mShouldDraw = false;
-                    return;
-                }
-            } else {
-                if (mDst[3] <= mDst[1] || mDst[7] <= mDst[5]) {
-                    mShouldDraw = false;
-                    return;
-                }
-            }
+    public int getShadingAlpha() {
+        return mShadingAlpha;
+    }
 
-			/* Sets the shadow and bitmap transformation matrices. */
-            mMatrix[x].setPolyToPoly(mSrc, 0, mDst, 0, NUM_OF_POLY_POINTS / 2);
-        }
-		/*
-		 * The shadows on the folds are split into two parts: Solid shadows and
-		 * gradients. Every other fold has a solid shadow which overlays the
-		 * whole fold. Similarly, the folds in between these alternating folds
-		 * also have an overlaying shadow. However, it is a gradient that takes
-		 * up part of the fold as opposed to a solid shadow overlaying the whole
-		 * fold.
-		 */
+    float getShadingFactor() {
+        return SHADING_FACTOR;
+    }
 
-		/* Solid shadow paint object. */
-        int alpha = (int) ((1 - mFoldFactor) * 255 * SHADING_ALPHA);
+    /**
+     * Draws the child the usual way. Renderers call it once per fold with the
+     * canvas transformed for that fold.
+     */
+    public void drawContent(Canvas canvas) {
+        super.dispatchDraw(canvas);
+    }
 
-        mSolidShadow.setColor(Color.argb(alpha, 0, 0, 0));
+    /**
+     * Draws the shadow of a fold. The canvas has to be transformed with the
+     * matrix of the fold. Even folds are covered by a solid shadow, odd folds
+     * by a gradient over part of the fold.
+     */
+    public void drawFoldShading(Canvas canvas, int fold) {
+        if (fold % 2 == 0) {
+            mSolidShadow.setColor(Color.argb(mShadingAlpha, 0, 0, 0));
+            canvas.drawRect(0, 0, mFoldDrawWidth, mFoldDrawHeight, mSolidShadow);
+            return;
+        }
 
+        mGradientShadow.setAlpha(mShadingAlpha);
+        canvas.save();
         if (mIsHorizontal) {
-            mShadowGradientMatrix.setScale(mFoldDrawWidth, 1);
-            mShadowLinearGradient.setLocalMatrix(mShadowGradientMatrix);
+            canvas.scale(mFoldDrawWidth, 1);
+            canvas.drawRect(0, 0, 1, mFoldDrawHeight, mGradientShadow);
         } else {
-            mShadowGradientMatrix.setScale(1, mFoldDrawHeight);
-            mShadowLinearGradient.setLocalMatrix(mShadowGradientMatrix);
+            canvas.scale(1, mFoldDrawHeight);
+            canvas.drawRect(0, 0, mFoldDrawWidth, 1, mGradientShadow);
         }
-
-        mGradientShadow.setAlpha(alpha);
+        canvas.restore();
     }
 
     @Override
     protected void dispatchDraw(Canvas canvas) {
+        if (mIsGeometryDirty) {
+            calculateMatrices();
+        }
+
         /**
          * If prepareFold has not been called or if preparation has not
          * completed yet, then no custom drawing will take place so only need to
@@ -512,62 +1016,24 @@ public class FoldingLayout extends LinearLayout {
             return;
         }
 
-        Rect src;
-		/*
-		 * Draws the bitmaps and shadows on the canvas with the appropriate
-		 * transformations.
-		 */
-        for (int x = 0; x < mNumberOfFolds; x++) {
-
-            src = mFoldRectArray[x];
-			/* The canvas is saved and restored for every individual fold */
-            canvas.save();
-
-			/*
-			 * Concatenates the canvas with the transformation matrix for the
-			 * the segment of the view corresponding to the actual image being
-			 * displayed.
-			 */
-            canvas.concat(mMatrix[x]);
-            if (Util.IS_JBMR2 ) {
-                mDstRect.set(0, 0, src.width(), src.height());
-                canvas.drawBitmap(mFullBitmap, src, mDstRect, null);
-            } else {
-				/*
-				 * The same transformation matrix is used for both the shadow
-				 * and the image segment. The canvas is clipped to account for
-				 * the size of each fold and is translated so they are drawn in
-				 * the right place. The shadow is then drawn on top of the
-				 * different folds using the sametransformation matrix.
-				 */
-                canvas.clipRect(0, 0, src.right - src.left, src.bottom
-                        - src.top);
-
-                if (mIsHorizontal) {
-                    canvas.translate(-src.left, 0);
-                } else {
-                    canvas.translate(0, -src.top);
-                }
-
-                super.dispatchDraw(canvas);
+        mLayerController.onFrame();
 
-                if (mIsHorizontal) {
-                    canvas.translate(src.left, 0);
-                } else {
-                    canvas.translate(0, src.top);
-                }
-            }
-			/* Draws the shadows corresponding to this specific fold. */
-            if (x % 2 == 0) {
-                canvas.drawRect(0, 0, mFoldDrawWidth, mFoldDrawHeight,
-                        mSolidShadow);
-            } else {
-                canvas.drawRect(0, 0, mFoldDrawWidth, mFoldDrawHeight,
-                        mGradientShadow);
-            }
+        IFoldRenderer renderer = mRenderer;
+        if (!renderer.isSupported(canvas)) {
+            renderer = getFallbackRenderer();
+        }
+        mDrawingRenderer = renderer;
+        if (mLayerController.isPromoted() && !renderer.drawsContent()) {
+            mLayerController.release();
+        }
 
-            canvas.restore();
+        /*
+         * A renderer that could not draw, for example because there was not
+         * enough memory for a snapshot, is replaced by a live draw.
+         */
+        if (!renderer.draw(this, canvas)) {
+            mLiveRenderer.draw(this, canvas);
         }
     }
 
-}
\ No newline at end of file
+}
@@ -1,17 +1,20 @@
 package ru.gdo.android.library.foldinglayout;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
+import android.animation.TimeInterpolator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.util.AttributeSet;
 import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewParent;
 import android.widget.LinearLayout;
 
 import ru.gdo.android.library.foldinglayout.interfaces.IAnimationListener;
 import ru.gdo.android.library.foldinglayout.interfaces.IAnimationNotifier;
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldAnimatorListener;
 
 /**
  * @author Danil Gudkov <d_n_l@mail.ru>
@@ -21,7 +24,7 @@ import ru.gdo.android.library.foldinglayout.interfaces.IAnimationNotifier;
 
 public class FoldingPanelLayout extends LinearLayout
         implements
-        Animator.AnimatorListener,
+        IFoldAnimatorListener,
         View.OnClickListener,
         IAnimationListener {
 
@@ -30,10 +33,6 @@ public class FoldingPanelLayout extends LinearLayout
         COLLAPSED
     }
 
-    private static final int START_ANIMATION_VALUE = 1;
-    private static final int END_ANIMATION_VALUE = 100;
-    private static final int ANIMATION_LENGTH = END_ANIMATION_VALUE - START_ANIMATION_VALUE + 1;
-
     /**
      * Default attributes for layout
      */
@@ -62,10 +61,50 @@ public class FoldingPanelLayout extends LinearLayout
     private static final boolean DEFAULT_HAS_EXTERNAL_ANIMATOR = false;
 
     /**
-     * Default test animation mode
+     * Default test animation mode. The testing mode only makes the panel use
+     * its own FoldAnimator even if externalAnimator is set, so its folds can
+     * be stepped by a FoldFrameStepper.
      */
     private static final boolean DEFAULT_TEST_MODE = false;
 
+    /**
+     * Default render mode of the folds
+     */
+    private static final int DEFAULT_RENDER_MODE = FoldingLayout.RENDER_MODE_LIVE;
+
+    /**
+     * Default hardware layer of the main view during animations
+     */
+    private static final boolean DEFAULT_HARDWARE_LAYER = false;
+
+    /**
+     * Default transform only animation
+     */
+    private static final boolean DEFAULT_TRANSFORM_ANIMATION = false;
+
+    /**
+     * Default layout containment
+     */
+    private static final boolean DEFAULT_LAYOUT_BOUNDARY = false;
+
+    /**
+     * Default dragging of the sliding view
+     */
+    private static final boolean DEFAULT_DRAG_ENABLED = false;
+
+    /**
+     * Default spring driven fold animation
+     */
+    private static final boolean DEFAULT_SPRING_ANIMATION = false;
+
+    /**
+     * Weights closest to the collapsed and the expanded state. A running
+     * animation is kept between them, so only its last value, delivered
+     * once the animator stopped, puts the panel into a rest state.
+     */
+    private static final float MIN_FLIGHT_WEIGHT = Float.MIN_VALUE;
+    private static final float MAX_FLIGHT_WEIGHT = Math.nextAfter(1.0f, 0.0);
+
     /**
      * Initial state for the component
      */
@@ -86,6 +125,68 @@ public class FoldingPanelLayout extends LinearLayout
 
     private boolean mTestingMode = DEFAULT_TEST_MODE;
 
+    private int mRenderMode = DEFAULT_RENDER_MODE;
+
+    private boolean mHardwareLayer = DEFAULT_HARDWARE_LAYER;
+
+    private boolean mTransformAnimation = DEFAULT_TRANSFORM_ANIMATION;
+
+    /**
+     * True while both children keep the full size of the panel and the
+     * animation only moves the sliding view and folds the main view.
+     */
+    private boolean mIsTransforming = false;
+
+    private boolean mLayoutBoundary = DEFAULT_LAYOUT_BOUNDARY;
+
+    /**
+     * Measure specs of the last measure pass, used to lay the panel out again
+     * without asking its parents.
+     */
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+    private boolean mHasMeasured = false;
+
+    /**
+     * Size of the main view along the orientation the last time the children
+     * were laid out for a weight, or -1 to lay them out on the next weight.
+     */
+    private int mLastMainSize = -1;
+
+    private boolean mDragEnabled = DEFAULT_DRAG_ENABLED;
+
+    private boolean mSpringAnimation = DEFAULT_SPRING_ANIMATION;
+
+    private final int mTouchSlop;
+    private final int mMinimumFlingVelocity;
+    private final int mMaximumFlingVelocity;
+
+    /**
+     * Obtained on the first drag and reused for every following one.
+     */
+    private VelocityTracker mVelocityTracker;
+    private int mActivePointerId;
+    private float mDragStartPosition;
+    private float mDragStartWeight;
+    private boolean mIsDragging = false;
+
+    /**
+     * True when onInterceptTouchEvent already tracked the down event that the
+     * framework hands to onTouchEvent next.
+     */
+    private boolean mIsDownTracked = false;
+
+    /**
+     * True while the click handling of the panel follows the gesture, so it
+     * is cancelled when the gesture turns into a drag.
+     */
+    private boolean mIsClickTracked = false;
+
+    /**
+     * True from the start of a drag until the fold it released settles. Only
+     * these frames use the transform only animation.
+     */
+    private boolean mIsDragFold = false;
 
     private View mMainView;
 
@@ -99,7 +200,7 @@ public class FoldingPanelLayout extends LinearLayout
     /**
      * Animator
      */
-    private ValueAnimator mAnimator;
+    private FoldAnimator mFoldAnimator;
 
     /**
      * Animator durationTime
@@ -119,6 +220,11 @@ public class FoldingPanelLayout extends LinearLayout
     public FoldingPanelLayout(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        this.mTouchSlop = configuration.getScaledTouchSlop();
+        this.mMinimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        this.mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+
         if (attrs != null) {
             TypedArray defAttrs = context.obtainStyledAttributes(attrs, DEFAULT_ATTRS);
 
@@ -135,6 +241,12 @@ public class FoldingPanelLayout extends LinearLayout
                 this.mDuration_Time = ta.getInt(R.styleable.FoldingPanelLayout_foldingDuration, DEFAULT_DURATION_TIME);
                 this.mHasExternalAnimator = ta.getBoolean(R.styleable.FoldingPanelLayout_externalAnimator, DEFAULT_HAS_EXTERNAL_ANIMATOR);
                 this.mTestingMode = ta.getBoolean(R.styleable.FoldingPanelLayout_testingMode, DEFAULT_TEST_MODE);
+                this.mRenderMode = ta.getInt(R.styleable.FoldingPanelLayout_foldRenderMode, DEFAULT_RENDER_MODE);
+                this.mHardwareLayer = ta.getBoolean(R.styleable.FoldingPanelLayout_foldHardwareLayer, DEFAULT_HARDWARE_LAYER);
+                this.mTransformAnimation = ta.getBoolean(R.styleable.FoldingPanelLayout_transformAnimation, DEFAULT_TRANSFORM_ANIMATION);
+                this.mLayoutBoundary = ta.getBoolean(R.styleable.FoldingPanelLayout_layoutBoundary, DEFAULT_LAYOUT_BOUNDARY);
+                this.mDragEnabled = ta.getBoolean(R.styleable.FoldingPanelLayout_dragEnabled, DEFAULT_DRAG_ENABLED);
+                this.mSpringAnimation = ta.getBoolean(R.styleable.FoldingPanelLayout_springAnimation, DEFAULT_SPRING_ANIMATION);
                 ta.recycle();
             }
 
@@ -147,31 +259,18 @@ public class FoldingPanelLayout extends LinearLayout
         mFoldingNavigationLayout.setNumberOfFolds(this.mNumberOfFolds);
         mFoldingNavigationLayout.setAnchorFactor(0);
         mFoldingNavigationLayout.setFoldingOrientation(getOrientation());
+        mFoldingNavigationLayout.setRenderMode(this.mRenderMode);
 
+        /*
+         * The testing mode always animates by itself, so a FoldFrameStepper
+         * can step the animation frame by frame.
+         */
         if (mTestingMode) {
             mHasExternalAnimator = false;
-            this.mAnimator = new AnimationSimulator(this);
-
         }
 
-        if (!mHasExternalAnimator && !mTestingMode) {
-
-            this.mAnimator = ValueAnimator.ofInt(START_ANIMATION_VALUE, END_ANIMATION_VALUE);
-            this.mAnimator.addListener(this);
-            this.mAnimator.setDuration(this.mDuration_Time);
-
-            this.mAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                    int val = (Integer) valueAnimator.getAnimatedValue();
-                    float offset = (val / (float) ANIMATION_LENGTH);
-                    if (FoldingPanelLayout.this.mPanelState == PanelState.COLLAPSED) {
-                        FoldingPanelLayout.this.onAnimationProgress(offset);
-                    } else {
-                        FoldingPanelLayout.this.onAnimationProgress(1 - offset);
-                    }
-                }
-            });
+        if (!mHasExternalAnimator) {
+            this.mFoldAnimator = new FoldAnimator(this, this.mDuration_Time);
         }
     }
 
@@ -213,11 +312,68 @@ public class FoldingPanelLayout extends LinearLayout
             this.mAnimatorView.removeListener(this);
         }
 
+        if (this.mFoldAnimator != null) {
+            this.mFoldAnimator.cancel();
+        }
+
+        if (this.mVelocityTracker != null) {
+            this.mVelocityTracker.recycle();
+            this.mVelocityTracker = null;
+        }
+        this.mIsDragging = false;
+        this.mIsClickTracked = false;
+        this.mIsDragFold = false;
+
         this.setClickListeners(null);
 
         super.onDetachedFromWindow();
     }
 
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        this.mLastWidthMeasureSpec = widthMeasureSpec;
+        this.mLastHeightMeasureSpec = heightMeasureSpec;
+        this.mHasMeasured = true;
+
+        /*
+         * The main view is unfolded when it takes the whole panel, so the
+         * folding layout is told about that size before it gets measured.
+         */
+        this.mFoldingNavigationLayout.setUnfoldedSize(
+                MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight(),
+                MeasureSpec.getSize(heightMeasureSpec) - getPaddingTop() - getPaddingBottom());
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+
+        if (this.mIsTransforming) {
+            /*
+             * Both children take the whole panel for the duration of the
+             * animation, which is the final size of either of them.
+             */
+            int childWidthSpec = MeasureSpec.makeMeasureSpec(
+                    getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY);
+            int childHeightSpec = MeasureSpec.makeMeasureSpec(
+                    getMeasuredHeight() - getPaddingTop() - getPaddingBottom(), MeasureSpec.EXACTLY);
+            this.mFoldingNavigationLayout.measure(childWidthSpec, childHeightSpec);
+            this.mSlidingView.measure(childWidthSpec, childHeightSpec);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (!this.mIsTransforming) {
+            super.onLayout(changed, l, t, r, b);
+            return;
+        }
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        this.mFoldingNavigationLayout.layout(left, top,
+                left + this.mFoldingNavigationLayout.getMeasuredWidth(),
+                top + this.mFoldingNavigationLayout.getMeasuredHeight());
+        this.mSlidingView.layout(left, top,
+                left + this.mSlidingView.getMeasuredWidth(),
+                top + this.mSlidingView.getMeasuredHeight());
+    }
+
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
@@ -240,6 +396,132 @@ public class FoldingPanelLayout extends LinearLayout
         }
     }
 
+    /**
+     * Selects how the folds of the main view are drawn.
+     *
+     * @param renderMode one of the FoldingLayout.RENDER_MODE_* constants
+     */
+    public void setRenderMode(int renderMode) {
+        this.mRenderMode = renderMode;
+        this.mFoldingNavigationLayout.setRenderMode(renderMode);
+    }
+
+    /**
+     * Promotes the main view to a hardware layer while the panel is animated
+     * or dragged, and removes the layer once the panel is expanded or
+     * collapsed. The layer is dropped early if the main view keeps changing
+     * during the animation.
+     */
+    public void setHardwareLayerEnabled(boolean enabled) {
+        this.mHardwareLayer = enabled;
+        if (!enabled) {
+            this.mFoldingNavigationLayout.releaseContentLayer();
+        }
+    }
+
+    public boolean isHardwareLayerEnabled() {
+        return this.mHardwareLayer;
+    }
+
+    /**
+     * Animates the panel without changing the weights of the children on
+     * every frame. The children are laid out once with the full size of the
+     * panel when the animation starts, then the sliding view is only
+     * translated and the main view only folds into the space left to it. The
+     * weights are applied and the panel is laid out again once it settles.
+     */
+    public void setTransformAnimationEnabled(boolean enabled) {
+        this.mTransformAnimation = enabled;
+    }
+
+    public boolean isTransformAnimationEnabled() {
+        return this.mTransformAnimation;
+    }
+
+    /**
+     * Lets the user fold the panel by dragging it along its orientation. The
+     * fold follows the finger and settles with the speed it was released at.
+     * A drag and the fold it releases always use the transform only
+     * animation, so the children are not laid out again for every touch
+     * event.
+     */
+    public void setDragEnabled(boolean enabled) {
+        this.mDragEnabled = enabled;
+    }
+
+    public boolean isDragEnabled() {
+        return this.mDragEnabled;
+    }
+
+    /**
+     * Folds and unfolds the panel on a spring instead of a fixed duration. A
+     * tap during a fold turns it around right away, keeping its speed, and a
+     * released drag starts the spring with the speed of the finger.
+     */
+    public void setSpringAnimationEnabled(boolean enabled) {
+        this.mSpringAnimation = enabled;
+    }
+
+    public boolean isSpringAnimationEnabled() {
+        return this.mSpringAnimation;
+    }
+
+    /**
+     * @return the spring of the fold animation, to configure its stiffness
+     * and damping, or null if the panel uses an external animator.
+     */
+    public FoldSpring getFoldSpring() {
+        return this.mFoldAnimator != null ? this.mFoldAnimator.getSpring() : null;
+    }
+
+    /**
+     * Sets the curve of the fold animation. It is evaluated on every frame,
+     * so curves that are expensive to evaluate should be wrapped into a
+     * FoldInterpolator.
+     */
+    public void setFoldInterpolator(TimeInterpolator interpolator) {
+        if (this.mFoldAnimator != null) {
+            this.mFoldAnimator.setInterpolator(interpolator);
+        }
+    }
+
+    /**
+     * Lets the panel lay out only its own children when the animation
+     * resizes them, as long as the parent measures the panel with an exact
+     * size. The size of the panel cannot change then, so there is no need to
+     * measure and lay out its parents and their other children again.
+     */
+    public void setLayoutBoundaryEnabled(boolean enabled) {
+        this.mLayoutBoundary = enabled;
+    }
+
+    public boolean isLayoutBoundaryEnabled() {
+        return this.mLayoutBoundary;
+    }
+
+    /**
+     * Lays the children out again for the current weights. When the panel is
+     * a layout boundary this is done right away with the last measure specs
+     * instead of requesting a layout of the whole window.
+     */
+    private void relayoutChildren() {
+        if (!this.mLayoutBoundary || !this.mHasMeasured || isLayoutRequested()
+                || MeasureSpec.getMode(this.mLastWidthMeasureSpec) != MeasureSpec.EXACTLY
+                || MeasureSpec.getMode(this.mLastHeightMeasureSpec) != MeasureSpec.EXACTLY) {
+            this.requestLayout();
+            return;
+        }
+
+        /*
+         * forceLayout only flags this panel, so measure runs again even
+         * though the specs did not change and nothing reaches the parent.
+         */
+        forceLayout();
+        measure(this.mLastWidthMeasureSpec, this.mLastHeightMeasureSpec);
+        layout(getLeft(), getTop(), getRight(), getBottom());
+        invalidate();
+    }
+
     @Override
     public IAnimationNotifier subscribeToAnimator() {
         IAnimationNotifier view = findAnimator(this.getParent());
@@ -293,25 +575,110 @@ public class FoldingPanelLayout extends LinearLayout
     }
 
     private void dispatchPanelSize(float mainPanelWeight) {
-        if (this.mMainPanelWeight != mainPanelWeight) {
+        if (this.mMainPanelWeight == mainPanelWeight) {
+            return;
+        }
+
+        if ((this.mTransformAnimation || this.mIsDragFold)
+                && mainPanelWeight > 0.0f && mainPanelWeight < 1.0f
+                && this.mSlidingView != null) {
             this.setMainPanelWeight(mainPanelWeight);
+            if (!this.mIsTransforming) {
+                this.mIsTransforming = true;
+                this.mLastMainSize = -1;
+                this.relayoutChildren();
+            }
+            applyTransform();
+            if (this.mHardwareLayer) {
+                this.mFoldingNavigationLayout.promoteContentLayer();
+            }
+            mFoldingNavigationLayout.setFoldFactor(this.mMainPanelWeight);
+            return;
+        }
 
-            LayoutParams layoutParams = (LayoutParams) this.mFoldingNavigationLayout.getLayoutParams();
-            layoutParams.weight = this.mMainPanelWeight;
+        if (this.mIsTransforming) {
+            this.mIsTransforming = false;
+            this.mFoldingNavigationLayout.setFoldExtent(-1);
+            this.mSlidingView.setTranslationX(0);
+            this.mSlidingView.setTranslationY(0);
+        }
 
-            layoutParams = (LayoutParams) this.mSlidingView.getLayoutParams();
-            layoutParams.weight = (1 - this.mMainPanelWeight);
+        this.setMainPanelWeight(mainPanelWeight);
+
+        LayoutParams layoutParams = (LayoutParams) this.mFoldingNavigationLayout.getLayoutParams();
+        layoutParams.weight = this.mMainPanelWeight;
+
+        layoutParams = (LayoutParams) this.mSlidingView.getLayoutParams();
+        layoutParams.weight = (1 - this.mMainPanelWeight);
+
+        if (this.mMainPanelWeight >= 1.0f) {
+            this.mPanelState = PanelState.EXPANDED;
+            this.mMainPanelWeight = 1.0f;
+            this.mFoldingNavigationLayout.releaseContentLayer();
+        } else if (this.mMainPanelWeight <= 0.0f) {
+            this.mPanelState = PanelState.COLLAPSED;
+            this.mMainPanelWeight = 0.0f;
+            this.mFoldingNavigationLayout.releaseContentLayer();
+        } else if (this.mHardwareLayer) {
+            // external animators and drags have no start callback
+            this.mFoldingNavigationLayout.promoteContentLayer();
+        }
 
-            if (this.mMainPanelWeight >= 1.0f) {
-                this.mPanelState = PanelState.EXPANDED;
-                this.mMainPanelWeight = 1.0f;
-            } else if (this.mMainPanelWeight <= 0.0f) {
-                this.mPanelState = PanelState.COLLAPSED;
-                this.mMainPanelWeight = 0.0f;
-            }
+        mFoldingNavigationLayout.setFoldFactor(this.mMainPanelWeight);
+
+        /*
+         * Slow animations and drags change the weight by less than a pixel on
+         * many frames. The children keep their sizes then, so they are not
+         * laid out again and the folding view only redraws when its fold
+         * changed.
+         */
+        int mainSize = getMainPanelSize();
+        boolean isAtRest = this.mMainPanelWeight <= 0.0f || this.mMainPanelWeight >= 1.0f;
+        if (isAtRest || mainSize != this.mLastMainSize || mainSize <= 0) {
+            this.mLastMainSize = mainSize;
+            this.relayoutChildren();
+        }
+    }
 
-            mFoldingNavigationLayout.setFoldFactor(this.mMainPanelWeight);
-            this.requestLayout();
+    /**
+     * @return the size the main view gets for the current weight, with the
+     * same float arithmetic LinearLayout uses to share out the space left to
+     * the weighted children.
+     */
+    private int getMainPanelSize() {
+        if (this.mMainPanelWeight <= 0.0f) {
+            return 0;
+        }
+        float weightSum = getWeightSum();
+        if (weightSum <= 0.0f) {
+            // LinearLayout adds up the weights of the children in order
+            weightSum = 0.0f + this.mMainPanelWeight + (1 - this.mMainPanelWeight);
+        }
+        return (int) (this.mMainPanelWeight * getAvailableSize() / weightSum);
+    }
+
+    /**
+     * @return the size of the panel along its orientation, without padding.
+     */
+    private int getAvailableSize() {
+        return this.getOrientation() == LinearLayout.HORIZONTAL ?
+                getWidth() - getPaddingLeft() - getPaddingRight() :
+                getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    /**
+     * Moves the sliding view to the end of the main view and folds the main
+     * view into the space before it.
+     */
+    private void applyTransform() {
+        boolean isHorizontal = this.getOrientation() == LinearLayout.HORIZONTAL;
+        int offset = Math.round(this.mMainPanelWeight * getAvailableSize());
+
+        this.mFoldingNavigationLayout.setFoldExtent(offset);
+        if (isHorizontal) {
+            this.mSlidingView.setTranslationX(offset);
+        } else {
+            this.mSlidingView.setTranslationY(offset);
         }
     }
 
@@ -333,49 +700,253 @@ public class FoldingPanelLayout extends LinearLayout
 
     @Override
     public void onClick(View v) {
+        if (!mHasExternalAnimator && this.mSpringAnimation && this.mFoldAnimator != null) {
+            float target;
+            if (this.mFoldAnimator.isRunning()) {
+                target = 1.0f - this.mFoldAnimator.getTarget();
+            } else {
+                target = (this.mPanelState == PanelState.EXPANDED) ? 0.0f : 1.0f;
+            }
+            this.mFoldingNavigationLayout.prepareContent();
+            this.mFoldAnimator.springTo(this.mMainPanelWeight, target, 0);
+            return;
+        }
         if (!mHasExternalAnimator) {
             switch (this.mPanelState) {
                 case EXPANDED:
                     this.setClickListeners(null);
-                    if (mTestingMode) {
-                        ((AnimationSimulator) this.mAnimator).setShift(-10);
-                    }
-                    this.mAnimator.start();
+                    this.mFoldingNavigationLayout.prepareContent();
+                    this.mFoldAnimator.start(this.mMainPanelWeight, 0.0f);
                     break;
                 case COLLAPSED:
                     setClickListeners(null);
-                    if (mTestingMode) {
-                        ((AnimationSimulator) this.mAnimator).setShift(10);
-                    }
-                    this.mAnimator.start();
+                    this.mFoldingNavigationLayout.prepareContent();
+                    this.mFoldAnimator.start(this.mMainPanelWeight, 1.0f);
                     break;
             }
         }
     }
 
     @Override
-    public void setClickListeners(View.OnClickListener view) {
-        this.setOnClickListener(view);
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (!canDrag()) {
+            return super.onInterceptTouchEvent(ev);
+        }
+        trackDrag(ev);
+        this.mIsDownTracked = ev.getActionMasked() == MotionEvent.ACTION_DOWN;
+        return this.mIsDragging;
     }
 
     @Override
-    public void onAnimationStart(Animator animation) {
+    public boolean onTouchEvent(MotionEvent ev) {
+        if (!canDrag()) {
+            return super.onTouchEvent(ev);
+        }
+        int action = ev.getActionMasked();
+        if (action != MotionEvent.ACTION_DOWN || !this.mIsDownTracked) {
+            trackDrag(ev);
+        }
+        this.mIsDownTracked = false;
 
+        if (this.mIsDragging) {
+            if (this.mIsClickTracked) {
+                cancelClick(ev);
+            }
+            return true;
+        }
+
+        // taps still reach the click listener
+        if (action == MotionEvent.ACTION_DOWN) {
+            this.mIsClickTracked = true;
+        }
+        if (this.mIsClickTracked) {
+            super.onTouchEvent(ev);
+        }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            this.mIsClickTracked = false;
+        }
+        return true;
     }
 
-    @Override
-    public void onAnimationEnd(Animator animation) {
-        this.setClickListeners(this);
+    /**
+     * Ends the click handling of a gesture that turned into a drag, which
+     * clears the pressed state and removes the pending tap and long press
+     * callbacks.
+     */
+    private void cancelClick(MotionEvent ev) {
+        this.mIsClickTracked = false;
+        MotionEvent cancel = MotionEvent.obtain(ev);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        super.onTouchEvent(cancel);
+        cancel.recycle();
+    }
+
+    private boolean canDrag() {
+        return this.mDragEnabled && this.mFoldAnimator != null
+                && this.mSlidingView != null && getAvailableSize() > 0;
+    }
+
+    /**
+     * Follows a touch gesture and starts a drag once it moved further than
+     * the touch slop along the orientation of the panel. Nothing is
+     * allocated per event, the velocity tracker is reused between drags.
+     */
+    private void trackDrag(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            if (this.mVelocityTracker == null) {
+                this.mVelocityTracker = VelocityTracker.obtain();
+            } else {
+                this.mVelocityTracker.clear();
+            }
+            this.mActivePointerId = ev.getPointerId(0);
+            this.mDragStartPosition = getAxisPosition(ev, 0);
+            this.mDragStartWeight = this.mMainPanelWeight;
+            this.mIsDragging = false;
+
+            /*
+             * A running fold is caught by the finger right away, unless it
+             * runs on the spring where a tap turns it around instead.
+             */
+            if (this.mFoldAnimator.isRunning() && !this.mSpringAnimation) {
+                startDrag();
+            }
+        }
+        if (this.mVelocityTracker != null) {
+            this.mVelocityTracker.addMovement(ev);
+        }
+
+        switch (action) {
+            case MotionEvent.ACTION_MOVE: {
+                int index = ev.findPointerIndex(this.mActivePointerId);
+                if (index < 0) {
+                    break;
+                }
+                float delta = getAxisPosition(ev, index) - this.mDragStartPosition;
+                if (!this.mIsDragging) {
+                    if (Math.abs(delta) <= this.mTouchSlop) {
+                        break;
+                    }
+                    // the fold starts where the finger left the slop
+                    this.mDragStartPosition += delta > 0 ? this.mTouchSlop : -this.mTouchSlop;
+                    delta += delta > 0 ? -this.mTouchSlop : this.mTouchSlop;
+                    startDrag();
+                }
+                float weight = this.mDragStartWeight + delta / getAvailableSize();
+                this.dispatchPanelSize(Math.max(0.0f, Math.min(1.0f, weight)));
+                break;
+            }
+            case MotionEvent.ACTION_POINTER_UP: {
+                int index = ev.getActionIndex();
+                if (ev.getPointerId(index) != this.mActivePointerId) {
+                    break;
+                }
+                // another finger takes the drag over from where the fold is
+                int newIndex = index == 0 ? 1 : 0;
+                this.mActivePointerId = ev.getPointerId(newIndex);
+                this.mDragStartPosition = getAxisPosition(ev, newIndex);
+                this.mDragStartWeight = Math.max(0.0f, this.mMainPanelWeight);
+                break;
+            }
+            case MotionEvent.ACTION_UP:
+                if (this.mIsDragging) {
+                    this.mVelocityTracker.computeCurrentVelocity(1000, this.mMaximumFlingVelocity);
+                    float velocity = this.getOrientation() == LinearLayout.HORIZONTAL ?
+                            this.mVelocityTracker.getXVelocity(this.mActivePointerId) :
+                            this.mVelocityTracker.getYVelocity(this.mActivePointerId);
+                    this.mIsDragging = false;
+                    settle(velocity);
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                if (this.mIsDragging) {
+                    this.mIsDragging = false;
+                    settle(0);
+                }
+                break;
+        }
+    }
+
+    private float getAxisPosition(MotionEvent ev, int index) {
+        return this.getOrientation() == LinearLayout.HORIZONTAL ? ev.getX(index) : ev.getY(index);
+    }
+
+    private void startDrag() {
+        this.mFoldAnimator.cancel();
+        this.mIsDragging = true;
+        this.mIsDragFold = true;
+        this.mDragStartWeight = Math.max(0.0f, this.mMainPanelWeight);
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        if (this.mHardwareLayer) {
+            this.mFoldingNavigationLayout.promoteContentLayer();
+        }
+    }
+
+    /**
+     * Settles a released drag. A fling finishes in its own direction and
+     * starts with the speed of the finger, a slow release finishes towards
+     * the closer state.
+     */
+    private void settle(float velocity) {
+        float target;
+        if (Math.abs(velocity) > this.mMinimumFlingVelocity) {
+            target = velocity > 0 ? 1.0f : 0.0f;
+        } else {
+            target = this.mMainPanelWeight >= 0.5f ? 1.0f : 0.0f;
+        }
+
+        if (this.mSpringAnimation) {
+            this.mFoldAnimator.springTo(this.mMainPanelWeight, target, velocity / getAvailableSize());
+            return;
+        }
+
+        float distance = Math.abs(target - this.mMainPanelWeight);
+        long duration = (long) (this.mDuration_Time * distance);
+        if (Math.abs(velocity) > this.mMinimumFlingVelocity) {
+            /*
+             * The decelerating curve starts at twice its average speed, so
+             * it takes this long to start at the speed of the finger.
+             */
+            long flingDuration = (long) (2000 * distance * getAvailableSize() / Math.abs(velocity));
+            duration = Math.min(duration, flingDuration);
+        }
+        this.mFoldAnimator.start(this.mMainPanelWeight, target, duration,
+                FoldInterpolator.getDecelerate());
     }
 
     @Override
-    public void onAnimationCancel(Animator animation) {
+    public void setClickListeners(View.OnClickListener view) {
+        this.setOnClickListener(view);
+    }
 
+    @Override
+    public void onFoldAnimationStart() {
+        if (this.mHardwareLayer) {
+            this.mFoldingNavigationLayout.promoteContentLayer();
+        }
     }
 
     @Override
-    public void onAnimationRepeat(Animator animation) {
+    public void onFoldAnimationUpdate(float value) {
+        /*
+         * A bouncing spring passes its target in flight. Reaching a rest
+         * state there would end the transform only animation, lay the panel
+         * out and report it expanded or collapsed in the middle of the
+         * animation, so the spring ends only once FoldSpring.isAtRest.
+         */
+        if (this.mFoldAnimator.isRunning()) {
+            value = Math.max(MIN_FLIGHT_WEIGHT, Math.min(MAX_FLIGHT_WEIGHT, value));
+        }
+        this.onAnimationProgress(Math.max(0.0f, Math.min(1.0f, value)));
+    }
 
+    @Override
+    public void onFoldAnimationEnd() {
+        this.mIsDragFold = false;
+        this.setClickListeners(this);
     }
 
 }
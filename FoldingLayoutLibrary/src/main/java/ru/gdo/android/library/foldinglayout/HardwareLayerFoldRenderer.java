@@ -0,0 +1,58 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.view.View;
+
+/**
+ * Draws the folds live, but promotes the content to a hardware layer for the
+ * duration of the fold. Every fold then only composites the texture of the
+ * layer instead of traversing the content again. The content keeps its
+ * unfolded size so that the layer is not rebuilt on every frame.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class HardwareLayerFoldRenderer extends LiveFoldRenderer {
+
+    private View mLayerView;
+    private int mPreviousLayerType = View.LAYER_TYPE_NONE;
+
+    @Override
+    public boolean isSupported(Canvas canvas) {
+        return canvas.isHardwareAccelerated() && super.isSupported(canvas);
+    }
+
+    @Override
+    public boolean keepsContentSize() {
+        return true;
+    }
+
+    @Override
+    public void onFoldStart(FoldingLayout layout) {
+        View content = layout.getChildAt(0);
+        if (content == null || mLayerView != null || !layout.isHardwareAccelerated()) {
+            return;
+        }
+        mPreviousLayerType = content.getLayerType();
+        if (mPreviousLayerType != View.LAYER_TYPE_HARDWARE) {
+            mLayerView = content;
+            content.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+        release();
+    }
+
+    @Override
+    public void release() {
+        if (mLayerView != null) {
+            mLayerView.setLayerType(mPreviousLayerType, null);
+            mLayerView = null;
+        }
+    }
+
+}
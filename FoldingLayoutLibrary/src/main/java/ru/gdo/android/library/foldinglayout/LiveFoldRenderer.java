@@ -0,0 +1,102 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldRenderer;
+
+/**
+ * Draws every fold by dispatching the draw of the content again, clipped to
+ * the segment of that fold. It always shows the current content, including
+ * views such as a TextureView that cannot be captured, but the cost of a
+ * frame grows with the number of folds.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class LiveFoldRenderer implements IFoldRenderer {
+
+    /**
+     * Android 4.3 ignores the changes of the canvas state between several
+     * dispatches of the same children when running with hardware
+     * acceleration, so the folds cannot be drawn live there.
+     */
+    @Override
+    public boolean isSupported(Canvas canvas) {
+        return !(Util.IS_JBMR2 && canvas.isHardwareAccelerated());
+    }
+
+    @Override
+    public boolean keepsContentSize() {
+        return false;
+    }
+
+    @Override
+    public boolean drawsContent() {
+        return true;
+    }
+
+    @Override
+    public boolean hasCapturedContent() {
+        return false;
+    }
+
+    @Override
+    public void onFoldPrepare(FoldingLayout layout) {
+
+    }
+
+    @Override
+    public void onFoldStart(FoldingLayout layout) {
+
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+
+    }
+
+    @Override
+    public void onContentInvalidated(FoldingLayout layout, Rect dirty) {
+
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        for (int x = 0; x < layout.getNumberOfFolds(); x++) {
+            Rect fold = layout.getFoldRect(x);
+            Rect content = layout.getContentRect(x);
+
+            canvas.save();
+            canvas.concat(layout.getFoldMatrix(x));
+
+            /*
+             * The canvas is clipped to the size of the fold and the segment of
+             * the content is scaled into it, which only matters when the
+             * content keeps its unfolded size.
+             */
+            canvas.clipRect(0, 0, fold.width(), fold.height());
+            canvas.save();
+            if (content.width() > 0 && content.height() > 0
+                    && (content.width() != fold.width() || content.height() != fold.height())) {
+                canvas.scale(fold.width() / (float) content.width(),
+                        fold.height() / (float) content.height());
+            }
+            canvas.translate(-content.left, -content.top);
+            layout.drawContent(canvas);
+            canvas.restore();
+
+            layout.drawFoldShading(canvas, x);
+            canvas.restore();
+        }
+        return true;
+    }
+
+    @Override
+    public void release() {
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.os.Build;
+
+/**
+ * Snapshot renderer that draws all the folds and their shading with a
+ * single drawBitmapMesh call, so the number of canvas operations does not
+ * depend on the number of folds. Hardware canvases that cannot draw meshes
+ * fall back to drawing the snapshot fold by fold.
+ *
+ * Hardware canvases before Android 5.0 ignore the colors of the vertices,
+ * so the mesh is drawn without them and every fold is shaded on its own.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class MeshFoldRenderer extends SnapshotFoldRenderer {
+
+    private final FoldMesh mMesh = new FoldMesh();
+
+    /**
+     * Bitmap meshes are only supported by the hardware renderer starting
+     * with Android 4.3.
+     */
+    private boolean canDrawMesh(Canvas canvas) {
+        return !canvas.isHardwareAccelerated()
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        if (!canDrawMesh(canvas)) {
+            return super.draw(layout, canvas);
+        }
+        if (!prepareSnapshot(layout)) {
+            return false;
+        }
+        if (!mMesh.setup(layout)) {
+            return super.draw(layout, canvas);
+        }
+
+        boolean isShaded = !canvas.isHardwareAccelerated() || Util.IS_L_OR_LATER;
+        mMesh.build(layout, layout.getShadingAlpha());
+        mMesh.draw(canvas, mSnapshot.getBitmap(), mBitmapPaint, isShaded);
+        if (!isShaded) {
+            for (int x = 0; x < layout.getNumberOfFolds(); x++) {
+                canvas.save();
+                canvas.concat(layout.getFoldMatrix(x));
+                layout.drawFoldShading(canvas, x);
+                canvas.restore();
+            }
+        }
+        return true;
+    }
+
+}
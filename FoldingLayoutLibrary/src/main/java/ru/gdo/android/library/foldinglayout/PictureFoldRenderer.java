@@ -0,0 +1,139 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.view.View;
+
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldRenderer;
+
+/**
+ * Records the draw commands of the content into a Picture when the fold
+ * starts and replays the recording inside every fold. The content runs its
+ * draw only once per change, like with a snapshot, but no pixel buffer is
+ * kept and the folds are drawn at full vector quality.
+ *
+ * Hardware accelerated canvases can only replay a Picture starting with
+ * Android 6.0, before that the renderer reports itself as unsupported and
+ * the layout falls back to the snapshot.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class PictureFoldRenderer implements IFoldRenderer {
+
+    private Picture mPicture;
+    private boolean mIsValid = false;
+
+    @Override
+    public boolean isSupported(Canvas canvas) {
+        return !canvas.isHardwareAccelerated() || Util.IS_M_OR_LATER;
+    }
+
+    @Override
+    public boolean keepsContentSize() {
+        return true;
+    }
+
+    @Override
+    public boolean drawsContent() {
+        return false;
+    }
+
+    @Override
+    public boolean hasCapturedContent() {
+        return mIsValid;
+    }
+
+    @Override
+    public void onFoldPrepare(FoldingLayout layout) {
+        View content = layout.getChildAt(0);
+        if (!mIsValid && content != null) {
+            record(content);
+        }
+    }
+
+    @Override
+    public void onFoldStart(FoldingLayout layout) {
+
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+        release();
+    }
+
+    /**
+     * A recording cannot be patched, so any change of the content drops it
+     * and the content is recorded again on the next frame.
+     */
+    @Override
+    public void onContentInvalidated(FoldingLayout layout, Rect dirty) {
+        if (mIsValid) {
+            mIsValid = false;
+            layout.invalidate();
+        }
+    }
+
+    private boolean record(View content) {
+        int width = content.getWidth();
+        int height = content.getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        if (mPicture == null) {
+            mPicture = new Picture();
+        }
+
+        /*
+         * The recording is marked valid before the content draws itself so
+         * that an invalidation raised while drawing is not lost.
+         */
+        mIsValid = true;
+        Canvas canvas = mPicture.beginRecording(width, height);
+        canvas.translate(-content.getScrollX(), -content.getScrollY());
+        content.draw(canvas);
+        mPicture.endRecording();
+        return true;
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        if (!mIsValid) {
+            View content = layout.getChildAt(0);
+            if (content == null || !record(content)) {
+                return false;
+            }
+        }
+
+        for (int x = 0; x < layout.getNumberOfFolds(); x++) {
+            Rect fold = layout.getFoldRect(x);
+            Rect content = layout.getContentRect(x);
+
+            canvas.save();
+            canvas.concat(layout.getFoldMatrix(x));
+            canvas.clipRect(0, 0, fold.width(), fold.height());
+            canvas.save();
+            if (content.width() > 0 && content.height() > 0) {
+                canvas.scale(fold.width() / (float) content.width(),
+                        fold.height() / (float) content.height());
+            }
+            canvas.translate(-content.left, -content.top);
+            canvas.drawPicture(mPicture);
+            canvas.restore();
+
+            layout.drawFoldShading(canvas, x);
+            canvas.restore();
+        }
+        return true;
+    }
+
+    @Override
+    public void release() {
+        mIsValid = false;
+        mPicture = null;
+    }
+
+}
@@ -0,0 +1,152 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Shader;
+
+import java.util.ArrayList;
+
+/**
+ * The part of a fold that does not depend on the state of a single layout:
+ * the strips the reference size is cut into and the keyframe table of the
+ * fold. Both only depend on the reference size, usually the unfolded size
+ * of the content, the number of folds, the anchor and the orientation, so
+ * layouts with the same configuration borrow the same instance and a list
+ * of identical panels computes them only once.
+ *
+ * Instances never change once they are built. They are reference counted,
+ * a layout only holds a reference while it is attached to a window, and
+ * they must only be used on the UI thread.
+ *
+ * The gradient that shades every other fold is built for a fold of unit
+ * length and stretched by the canvas, so there is one per orientation for
+ * the whole process. The paints it is drawn with stay with every layout,
+ * as their alpha changes right before every fold is drawn.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+class SharedFoldResources {
+
+    private static final ArrayList<SharedFoldResources> sResources = new ArrayList<SharedFoldResources>();
+
+    private static LinearGradient sHorizontalGradient;
+    private static LinearGradient sVerticalGradient;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFolds;
+    private final float mAnchorFactor;
+    private final boolean mIsHorizontal;
+    private final int mKeyframeCount;
+
+    private int mReferenceCount = 0;
+
+    private final int[] mStrips;
+    private final FoldKeyframes mKeyframes;
+
+    private SharedFoldResources(int width, int height, int folds, float anchorFactor,
+                                boolean isHorizontal, int keyframeCount) {
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mFolds = folds;
+        this.mAnchorFactor = anchorFactor;
+        this.mIsHorizontal = isHorizontal;
+        this.mKeyframeCount = keyframeCount;
+
+        mStrips = new int[folds * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(width, height, folds, isHorizontal, mStrips);
+        mKeyframes = keyframeCount > 0 ? new FoldKeyframes(keyframeCount, width, height,
+                folds, anchorFactor, isHorizontal) : null;
+    }
+
+    /**
+     * Returns the resources of the given configuration and takes a reference
+     * on them. Every call has to be balanced by a call to release.
+     *
+     * @param keyframeCount number of keyframes of the table, 0 for none.
+     */
+    static SharedFoldResources acquire(int width, int height, int folds, float anchorFactor,
+                                       boolean isHorizontal, int keyframeCount) {
+        SharedFoldResources resources = null;
+        for (int i = 0; i < sResources.size(); i++) {
+            SharedFoldResources candidate = sResources.get(i);
+            if (candidate.matches(width, height, folds, anchorFactor, isHorizontal, keyframeCount)) {
+                resources = candidate;
+                break;
+            }
+        }
+        if (resources == null) {
+            resources = new SharedFoldResources(width, height, folds, anchorFactor,
+                    isHorizontal, keyframeCount);
+            sResources.add(resources);
+        }
+        resources.mReferenceCount++;
+        return resources;
+    }
+
+    void release() {
+        if (--mReferenceCount == 0) {
+            sResources.remove(this);
+        }
+    }
+
+    boolean matches(int width, int height, int folds, float anchorFactor,
+                    boolean isHorizontal, int keyframeCount) {
+        return width == mWidth && height == mHeight && folds == mFolds
+                && anchorFactor == mAnchorFactor && isHorizontal == mIsHorizontal
+                && keyframeCount == mKeyframeCount;
+    }
+
+    /**
+     * @return true if the strips were cut from an area of the given size.
+     */
+    boolean hasSize(int width, int height) {
+        return width == mWidth && height == mHeight;
+    }
+
+    /**
+     * @return the strips of the reference size in the layout of
+     * FoldGeometry.segment. The array must not be modified.
+     */
+    int[] getStrips() {
+        return mStrips;
+    }
+
+    /**
+     * @return the keyframe table, or null if the resources were acquired
+     * without keyframes.
+     */
+    FoldKeyframes getKeyframes() {
+        return mKeyframes;
+    }
+
+    /**
+     * @return the gradient over a fold of unit length, from black at its
+     * start to transparent at SHADING_FACTOR.
+     */
+    static LinearGradient getGradient(boolean isHorizontal) {
+        if (isHorizontal) {
+            if (sHorizontalGradient == null) {
+                sHorizontalGradient = new LinearGradient(0, 0, FoldingLayout.SHADING_FACTOR, 0,
+                        Color.BLACK, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+            }
+            return sHorizontalGradient;
+        }
+        if (sVerticalGradient == null) {
+            sVerticalGradient = new LinearGradient(0, 0, 0, FoldingLayout.SHADING_FACTOR,
+                    Color.BLACK, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+        }
+        return sVerticalGradient;
+    }
+
+    /**
+     * @return the number of configurations currently held by a layout.
+     */
+    static int getCount() {
+        return sResources.size();
+    }
+
+}
@@ -0,0 +1,264 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+import ru.gdo.android.library.foldinglayout.interfaces.IFoldRenderer;
+
+/**
+ * Captures the content into a bitmap when the fold starts and draws every
+ * fold from that bitmap, so the cost of a frame does not grow with the
+ * number of folds. Invalidated parts of the content are redrawn into the
+ * bitmap before the next frame.
+ *
+ * With reduced levels enabled the folds sample the smallest level of the
+ * snapshot that still has at least one pixel per screen pixel along the
+ * folding axis.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class SnapshotFoldRenderer implements IFoldRenderer {
+
+    /**
+     * Delay after the last moving frame before the folds are drawn again
+     * with the exact snapshot level.
+     */
+    private static final int LEVEL_SETTLE_DELAY = 150;
+
+    final FoldSnapshot mSnapshot = new FoldSnapshot();
+    protected final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final boolean mUseLevels;
+
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private float mLastDrawnFoldFactor = -1;
+
+    /**
+     * Redraws the layout once the fold stopped moving. It is posted once
+     * and pushed back by every moving frame.
+     */
+    private FoldingLayout mSettleLayout;
+    private final Runnable mSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mSettleLayout != null) {
+                mSettleLayout.invalidate();
+                mSettleLayout = null;
+            }
+        }
+    };
+
+    public SnapshotFoldRenderer() {
+        this(false);
+    }
+
+    /**
+     * @param useLevels true to sample reduced levels of the snapshot when the
+     *                  folds are narrow enough.
+     */
+    public SnapshotFoldRenderer(boolean useLevels) {
+        this.mUseLevels = useLevels;
+    }
+
+    @Override
+    public boolean isSupported(Canvas canvas) {
+        return true;
+    }
+
+    @Override
+    public boolean keepsContentSize() {
+        return true;
+    }
+
+    @Override
+    public boolean drawsContent() {
+        return false;
+    }
+
+    @Override
+    public boolean hasCapturedContent() {
+        return mSnapshot.hasContent();
+    }
+
+    /**
+     * Captures the content ahead of the fold and starts uploading the bitmap
+     * to the GPU, so neither lands on the first frame of the animation.
+     */
+    @Override
+    public void onFoldPrepare(FoldingLayout layout) {
+        if (prepareSnapshot(layout)) {
+            mSnapshot.upload();
+        }
+    }
+
+    @Override
+    public void onFoldStart(FoldingLayout layout) {
+
+    }
+
+    @Override
+    public void onFoldEnd(FoldingLayout layout) {
+        mSnapshot.release();
+    }
+
+    @Override
+    public void onContentInvalidated(FoldingLayout layout, Rect dirty) {
+        if (mSnapshot.hasContent()) {
+            if (dirty != null) {
+                mSnapshot.invalidate(dirty);
+            } else {
+                mSnapshot.invalidate();
+            }
+            layout.invalidate();
+        }
+    }
+
+    /**
+     * Makes sure the snapshot holds the current content.
+     *
+     * @return false if the snapshot could not be taken.
+     */
+    protected boolean prepareSnapshot(FoldingLayout layout) {
+        if (mSnapshot.isValid()) {
+            return true;
+        }
+        View content = layout.getChildAt(0);
+        return content != null && mSnapshot.update(content);
+    }
+
+    @Override
+    public boolean draw(FoldingLayout layout, Canvas canvas) {
+        if (!prepareSnapshot(layout)) {
+            return false;
+        }
+
+        boolean isHorizontal = layout.getFoldingOrientation() == FoldingLayout.HORIZONTAL;
+        int level = selectLevel(layout, isHorizontal);
+        Bitmap bitmap = mSnapshot.getBitmap(level, isHorizontal);
+        if (bitmap == mSnapshot.getBitmap()) {
+            level = 0;
+
+            /*
+             * Hardware bitmaps can only be drawn by a hardware canvas.
+             */
+            Bitmap hardwareBitmap = mSnapshot.getHardwareBitmap();
+            if (hardwareBitmap != null && canvas.isHardwareAccelerated()) {
+                bitmap = hardwareBitmap;
+            }
+        }
+        drawFolds(layout, canvas, bitmap, level);
+        return true;
+    }
+
+    /**
+     * Draws every fold from a bitmap of the content reduced by 2^level along
+     * the folding axis.
+     */
+    void drawFolds(FoldingLayout layout, Canvas canvas, Bitmap bitmap, int level) {
+        boolean isHorizontal = layout.getFoldingOrientation() == FoldingLayout.HORIZONTAL;
+        for (int x = 0; x < layout.getNumberOfFolds(); x++) {
+            Rect fold = layout.getFoldRect(x);
+            Rect content = layout.getContentRect(x);
+
+            /*
+             * The snapshot has the size of the content, so its segment is
+             * scaled into the segment of the layout. Reduced levels only
+             * shrink along the folding axis.
+             */
+            if (isHorizontal) {
+                mSrcRect.set(content.left >> level, content.top,
+                        content.right >> level, content.bottom);
+            } else {
+                mSrcRect.set(content.left, content.top >> level,
+                        content.right, content.bottom >> level);
+            }
+            mDstRect.set(0, 0, fold.width(), fold.height());
+
+            canvas.save();
+            canvas.concat(layout.getFoldMatrix(x));
+            canvas.drawBitmap(bitmap, mSrcRect, mDstRect, mBitmapPaint);
+            layout.drawFoldShading(canvas, x);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Picks the smallest snapshot level that still has at least one pixel
+     * per screen pixel along the folding axis. While the fold is moving one
+     * more level is allowed, and a redraw is scheduled so the exact level is
+     * used once the fold stops.
+     */
+    private int selectLevel(FoldingLayout layout, boolean isHorizontal) {
+        if (!mUseLevels) {
+            return 0;
+        }
+
+        Bitmap bitmap = mSnapshot.getBitmap();
+        float content = isHorizontal ? bitmap.getWidth() : bitmap.getHeight();
+        float screen = getFoldedLength(layout, isHorizontal);
+        boolean isMoving = layout.getFoldFactor() != mLastDrawnFoldFactor;
+        mLastDrawnFoldFactor = layout.getFoldFactor();
+
+        int level = 0;
+        while (level < FoldSnapshot.MAX_LEVEL && content / (2 << level) >= screen) {
+            level++;
+        }
+        if (isMoving && level < FoldSnapshot.MAX_LEVEL
+                && content / (2 << level) >= screen / 2) {
+            level++;
+            scheduleSettle(layout);
+        }
+        return level;
+    }
+
+    /**
+     * @return the length of all the folds on the screen along the folding
+     * axis, measured along the longer edge of every fold.
+     */
+    private static float getFoldedLength(FoldingLayout layout, boolean isHorizontal) {
+        float[] quads = layout.getFoldQuads();
+        if (quads == null) {
+            return isHorizontal ? layout.getWidth() : layout.getHeight();
+        }
+        int axis = isHorizontal ? 0 : 1;
+        float length = 0;
+        for (int x = 0; x < layout.getNumberOfFolds(); x++) {
+            int i = x * FoldGeometry.QUAD_SIZE + axis;
+
+            /*
+             * The corners are in the order top left, bottom left, top right
+             * and bottom right, so the edges along the horizontal axis are
+             * 0 to 4 and 2 to 6, and along the vertical axis 0 to 2 and 4 to 6.
+             */
+            float first = isHorizontal ? quads[i + 4] - quads[i] : quads[i + 2] - quads[i];
+            float second = isHorizontal ? quads[i + 6] - quads[i + 2] : quads[i + 6] - quads[i + 4];
+            length += Math.max(Math.abs(first), Math.abs(second));
+        }
+        return length;
+    }
+
+    private void scheduleSettle(FoldingLayout layout) {
+        if (mSettleLayout != null) {
+            mSettleLayout.removeCallbacks(mSettleRunnable);
+        }
+        mSettleLayout = layout;
+        layout.postDelayed(mSettleRunnable, LEVEL_SETTLE_DELAY);
+    }
+
+    @Override
+    public void release() {
+        mSnapshot.release();
+        if (mSettleLayout != null) {
+            mSettleLayout.removeCallbacks(mSettleRunnable);
+            mSettleLayout = null;
+        }
+    }
+
+}
@@ -12,5 +12,10 @@ public class Util {
     static final boolean IS_JBMR2 = Build.VERSION.SDK_INT == Build.VERSION_CODES.JELLY_BEAN_MR2;
     static final boolean IS_ISC = Build.VERSION.SDK_INT == Build.VERSION_CODES.ICE_CREAM_SANDWICH;
     static final boolean IS_GINGERBREAD_MR1 = Build.VERSION.SDK_INT == Build.VERSION_CODES.GINGERBREAD_MR1;
+    static final boolean IS_L_OR_LATER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    // Build.VERSION_CODES.M is newer than the compile SDK
+    static final boolean IS_M_OR_LATER = Build.VERSION.SDK_INT >= 23;
+    // Build.VERSION_CODES.O is newer than the compile SDK
+    static final boolean IS_O_OR_LATER = Build.VERSION.SDK_INT >= 26;
 }
 
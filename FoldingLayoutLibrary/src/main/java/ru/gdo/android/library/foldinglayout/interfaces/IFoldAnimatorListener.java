@@ -0,0 +1,13 @@
+package ru.gdo.android.library.foldinglayout.interfaces;
+
+/**
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public interface IFoldAnimatorListener {
+    void onFoldAnimationStart();
+    void onFoldAnimationUpdate(float value);
+    void onFoldAnimationEnd();
+}
@@ -0,0 +1,25 @@
+package ru.gdo.android.library.foldinglayout.interfaces;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import ru.gdo.android.library.foldinglayout.FoldingLayout;
+
+/**
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public interface IFoldRenderer {
+    boolean isSupported(Canvas canvas);
+    boolean keepsContentSize();
+    boolean drawsContent();
+    boolean hasCapturedContent();
+    void onFoldPrepare(FoldingLayout layout);
+    void onFoldStart(FoldingLayout layout);
+    void onFoldEnd(FoldingLayout layout);
+    void onContentInvalidated(FoldingLayout layout, Rect dirty);
+    boolean draw(FoldingLayout layout, Canvas canvas);
+    void release();
+}
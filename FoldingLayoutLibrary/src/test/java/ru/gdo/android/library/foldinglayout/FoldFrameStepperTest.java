@@ -0,0 +1,115 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fold animations of a panel played frame by frame on the virtual clock.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FoldFrameStepperTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 800;
+    private static final int DURATION = 750;
+    private static final int MAX_FRAMES = 300;
+
+    private FoldFrameStepper mStepper;
+    private FoldingPanelLayout mPanel;
+    private View mSlidingView;
+
+    @Before
+    public void setUp() {
+        mStepper = new FoldFrameStepper();
+        mStepper.install();
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mPanel = new FoldingPanelLayout(activity);
+        mSlidingView = new View(activity);
+        mPanel.addView(new View(activity));
+        mPanel.addView(mSlidingView);
+        activity.setContentView(mPanel);
+
+        mPanel.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mPanel.layout(0, 0, WIDTH, HEIGHT);
+        mStepper.watch(mPanel);
+    }
+
+    @After
+    public void tearDown() {
+        mStepper.uninstall();
+    }
+
+    @Test
+    public void timedFoldTakesItsDuration() {
+        mPanel.performClick();
+        int frames = mStepper.runUntilIdle(MAX_FRAMES);
+
+        long interval = FoldFrameStepper.FRAME_INTERVAL_60HZ;
+        assertEquals((DURATION * 1000000L + interval - 1) / interval, frames);
+        assertFalse(mStepper.isAnimating());
+
+        ArrayList<FoldFrameStepper.Frame> recorded = mStepper.getFrames();
+        float previous = 0;
+        for (int i = 0; i < recorded.size(); i++) {
+            float factor = recorded.get(i).foldFactors[0];
+            assertTrue(factor >= previous);
+            previous = factor;
+        }
+        assertEquals(1, previous, 0);
+    }
+
+    @Test
+    public void weightFoldIsLaidOutOnEveryFrame() {
+        mPanel.performClick();
+        while (mStepper.isAnimating()) {
+            FoldFrameStepper.Frame frame = mStepper.step();
+
+            // the width LinearLayout gives the main view for this frame
+            float weight = frame.foldFactors[0];
+            int expected = (int) (weight * WIDTH / (0.0f + weight + (1 - weight)));
+            assertEquals(expected, mPanel.mFoldingNavigationLayout.getWidth());
+            assertTrue(mStepper.getFrames().size() < MAX_FRAMES);
+        }
+    }
+
+    @Test
+    public void transformFoldOnlyMovesSlidingView() {
+        mPanel.setTransformAnimationEnabled(true);
+        mPanel.performClick();
+        while (mStepper.isAnimating()) {
+            FoldFrameStepper.Frame frame = mStepper.step();
+            float weight = frame.foldFactors[0];
+            if (weight > 0 && weight < 1) {
+                assertEquals(WIDTH, mPanel.mFoldingNavigationLayout.getWidth());
+                assertEquals(Math.round(weight * WIDTH), mSlidingView.getTranslationX(), 0);
+            }
+            assertTrue(mStepper.getFrames().size() < MAX_FRAMES);
+        }
+        assertEquals(0, mSlidingView.getTranslationX(), 0);
+        assertEquals(WIDTH, mPanel.mFoldingNavigationLayout.getWidth());
+        assertTrue(mStepper.getMaxWorkNanos() > 0);
+    }
+
+}
@@ -0,0 +1,176 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The fold math on the JVM: the strips, the general perspective solve and
+ * the closed form used for the trapezoids of the folds.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldGeometryTest {
+
+    private static final float TOLERANCE = 0.01f;
+
+    @Test
+    public void segmentEvenHorizontal() {
+        int[] strips = new int[4 * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(100, 50, 4, true, strips);
+        assertArrayEquals(new int[]{
+                0, 0, 25, 50,
+                25, 0, 50, 50,
+                50, 0, 75, 50,
+                75, 0, 100, 50}, strips);
+    }
+
+    @Test
+    public void segmentUnevenVertical() {
+        int[] strips = new int[3 * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(50, 100, 3, false, strips);
+        assertArrayEquals(new int[]{
+                0, 0, 50, 33,
+                0, 33, 50, 66,
+                0, 66, 50, 100}, strips);
+    }
+
+    @Test
+    public void segmentCoversWholeSize() {
+        for (int folds = 1; folds <= 16; folds++) {
+            for (int size = folds; size <= 200; size++) {
+                assertCovers(size, folds, true);
+                assertCovers(size, folds, false);
+            }
+        }
+    }
+
+    private static void assertCovers(int size, int folds, boolean isHorizontal) {
+        int[] strips = new int[folds * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(isHorizontal ? size : 10, isHorizontal ? 10 : size,
+                folds, isHorizontal, strips);
+        int start = isHorizontal ? 0 : 1;
+        int end = isHorizontal ? 2 : 3;
+        int position = 0;
+        for (int x = 0; x < folds; x++) {
+            int i = x * FoldGeometry.STRIP_SIZE;
+            assertEquals(position, strips[i + start]);
+            assertTrue(strips[i + end] >= strips[i + start]);
+            position = strips[i + end];
+        }
+        assertEquals(size, position);
+    }
+
+    @Test
+    public void rectToQuadMapsCorners() {
+        float[] quad = {12, 7, 3, 95, 140, 20, 160, 88};
+        float[] matrix = new float[FoldGeometry.MATRIX_SIZE];
+        FoldGeometry.rectToQuad(200, 100, quad, 0, matrix, 0);
+        assertCornersMapped(200, 100, quad, 0, matrix, 0);
+    }
+
+    @Test
+    public void rectToQuadOfParallelogramIsAffine() {
+        float[] quad = {10, 10, 30, 110, 210, 10, 230, 110};
+        float[] matrix = new float[FoldGeometry.MATRIX_SIZE];
+        FoldGeometry.rectToQuad(200, 100, quad, 0, matrix, 0);
+        assertCornersMapped(200, 100, quad, 0, matrix, 0);
+        assertEquals(0, matrix[6], 0);
+        assertEquals(0, matrix[7], 0);
+    }
+
+    @Test
+    public void trapezoidToMatrixMapsHorizontalFold() {
+        // left side full height, right side shrunk towards the middle
+        float[] quad = {0, 0, 0, 400, 90, 20, 90, 380};
+        float[] matrix = new float[FoldGeometry.MATRIX_SIZE];
+        FoldGeometry.trapezoidToMatrix(100, 400, true, quad, 0, matrix, 0);
+        assertCornersMapped(100, 400, quad, 0, matrix, 0);
+        assertEquals(0, matrix[1], 0);
+        assertEquals(0, matrix[7], 0);
+    }
+
+    @Test
+    public void trapezoidToMatrixMapsVerticalFold() {
+        float[] quad = {15, 50, 0, 140, 285, 50, 300, 140};
+        float[] matrix = new float[2 * FoldGeometry.MATRIX_SIZE];
+        FoldGeometry.trapezoidToMatrix(300, 100, false, quad, 0, matrix, FoldGeometry.MATRIX_SIZE);
+        assertCornersMapped(300, 100, quad, 0, matrix, FoldGeometry.MATRIX_SIZE);
+        assertEquals(0, matrix[FoldGeometry.MATRIX_SIZE + 3], 0);
+        assertEquals(0, matrix[FoldGeometry.MATRIX_SIZE + 6], 0);
+    }
+
+    @Test
+    public void trapezoidToMatrixAgreesWithRectToQuad() {
+        float[] quad = {40, 12, 40, 188, 95, 0, 95, 200};
+        float[] trapezoid = new float[FoldGeometry.MATRIX_SIZE];
+        float[] general = new float[FoldGeometry.MATRIX_SIZE];
+        FoldGeometry.trapezoidToMatrix(60, 200, true, quad, 0, trapezoid, 0);
+        FoldGeometry.rectToQuad(60, 200, quad, 0, general, 0);
+        assertArrayEquals(general, trapezoid, 1e-5f);
+    }
+
+    @Test
+    public void computeLiesFlatWhenExpanded() {
+        FoldGeometry geometry = new FoldGeometry();
+        float[] quads = new float[4 * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[4 * FoldGeometry.MATRIX_SIZE];
+        assertTrue(geometry.compute(400, 800, 4, 0, true, 1, quads, matrices));
+        for (int x = 0; x < 4; x++) {
+            float left = x * 100;
+            float right = left + 100;
+            float[] strip = {left, 0, left, 800, right, 0, right, 800};
+            for (int i = 0; i < FoldGeometry.QUAD_SIZE; i++) {
+                assertEquals(strip[i], quads[x * FoldGeometry.QUAD_SIZE + i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void computeNarrowsOddFoldsWhenCollapsed() {
+        FoldGeometry geometry = new FoldGeometry();
+        float[] quads = new float[2 * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[2 * FoldGeometry.MATRIX_SIZE];
+        assertTrue(geometry.compute(400, 800, 2, 0, true, 0, quads, matrices));
+
+        // the crease between both folds moves away from the viewer
+        assertEquals(40, quads[5], 0);
+        assertEquals(760, quads[7], 0);
+        assertEquals(40, quads[FoldGeometry.QUAD_SIZE + 1], 0);
+        assertEquals(760, quads[FoldGeometry.QUAD_SIZE + 3], 0);
+        assertCornersMapped(geometry.getFoldDrawWidth(), geometry.getFoldDrawHeight(),
+                quads, 0, matrices, 0);
+        assertCornersMapped(geometry.getFoldDrawWidth(), geometry.getFoldDrawHeight(),
+                quads, FoldGeometry.QUAD_SIZE, matrices, FoldGeometry.MATRIX_SIZE);
+    }
+
+    /**
+     * Maps the corners of the rectangle (0, 0, width, height) in the order
+     * of the quads and compares them to the quad.
+     */
+    static void assertCornersMapped(float width, float height, float[] quad, int quadOffset,
+                                    float[] matrix, int matrixOffset) {
+        float[] corners = {0, 0, 0, height, width, 0, width, height};
+        for (int i = 0; i < corners.length; i += 2) {
+            float[] point = map(matrix, matrixOffset, corners[i], corners[i + 1]);
+            assertEquals(quad[quadOffset + i], point[0], TOLERANCE);
+            assertEquals(quad[quadOffset + i + 1], point[1], TOLERANCE);
+        }
+    }
+
+    /**
+     * Maps a point the way android.graphics.Matrix.mapPoints does.
+     */
+    static float[] map(float[] matrix, int offset, float x, float y) {
+        float w = matrix[offset + 6] * x + matrix[offset + 7] * y + matrix[offset + 8];
+        return new float[]{
+                (matrix[offset] * x + matrix[offset + 1] * y + matrix[offset + 2]) / w,
+                (matrix[offset + 3] * x + matrix[offset + 4] * y + matrix[offset + 5]) / w};
+    }
+
+}
@@ -0,0 +1,121 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The interpolated keyframes against the exact geometry of FoldGeometry,
+ * for folds drawn at the reference size and for folds that shrink with the
+ * fold factor.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldKeyframesTest {
+
+    private static final int KEYFRAMES = 64;
+    private static final int STEPS = 1000;
+    private static final float TOLERANCE = 2;
+
+    private static final int[][] SIZES = {{1080, 1920}, {333, 517}, {400, 800}};
+    private static final int[] FOLDS = {1, 2, 3, 4, 7, 8};
+    private static final float[] ANCHORS = {0, 0.5f, 1};
+
+    @Test
+    public void fixedSizeStaysCloseToExact() {
+        for (int[] size : SIZES) {
+            for (int folds : FOLDS) {
+                for (float anchor : ANCHORS) {
+                    assertFixedSize(size[0], size[1], folds, anchor, true);
+                    assertFixedSize(size[0], size[1], folds, anchor, false);
+                }
+            }
+        }
+    }
+
+    private static void assertFixedSize(int width, int height, int folds, float anchor,
+                                        boolean isHorizontal) {
+        FoldKeyframes keyframes = new FoldKeyframes(KEYFRAMES, width, height, folds, anchor,
+                isHorizontal);
+        FoldGeometry geometry = new FoldGeometry();
+        float[] quads = new float[folds * FoldGeometry.QUAD_SIZE];
+        float[] exactQuads = new float[folds * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        float[] exactMatrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        float[] drawSize = new float[2];
+
+        for (int step = 1; step < STEPS; step++) {
+            float factor = step / (float) STEPS;
+            String message = width + "x" + height + ", " + folds + " folds, anchor " + anchor
+                    + ", horizontal " + isHorizontal + ", factor " + factor;
+            boolean isVisible = keyframes.compute(new FoldGeometry(), width, height, factor,
+                    quads, matrices, drawSize);
+            boolean isExactlyVisible = geometry.compute(width, height, folds, anchor,
+                    isHorizontal, factor, exactQuads, exactMatrices);
+            assertEquals(message, isExactlyVisible, isVisible);
+            if (isVisible) {
+                assertArrayEquals(message, exactQuads, quads, TOLERANCE);
+                for (int x = 0; x < folds; x++) {
+                    FoldGeometryTest.assertCornersMapped(drawSize[0], drawSize[1], quads, x * FoldGeometry.QUAD_SIZE,
+                            matrices, x * FoldGeometry.MATRIX_SIZE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shrinkingSizeIsExact() {
+        for (int[] size : SIZES) {
+            for (int folds : FOLDS) {
+                assertShrinkingSize(size[0], size[1], folds, true);
+                assertShrinkingSize(size[0], size[1], folds, false);
+            }
+        }
+    }
+
+    /*
+     * The layout shrinks with the fold factor the way it does in a weight
+     * animation, while the table keeps the unfolded size.
+     */
+    private static void assertShrinkingSize(int width, int height, int folds, boolean isHorizontal) {
+        FoldKeyframes keyframes = new FoldKeyframes(KEYFRAMES, width, height, folds, 0.5f,
+                isHorizontal);
+        FoldGeometry geometry = new FoldGeometry();
+        float[] quads = new float[folds * FoldGeometry.QUAD_SIZE];
+        float[] exactQuads = new float[folds * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        float[] exactMatrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        float[] drawSize = new float[2];
+
+        for (int step = 1; step < STEPS; step++) {
+            float factor = step / (float) STEPS;
+            int foldWidth = isHorizontal ? (int) (width * factor) : width;
+            int foldHeight = isHorizontal ? height : (int) (height * factor);
+            String message = foldWidth + "x" + foldHeight + ", " + folds + " folds, factor " + factor;
+            boolean isVisible = keyframes.compute(new FoldGeometry(), foldWidth, foldHeight,
+                    factor, quads, matrices, drawSize);
+            boolean isExactlyVisible = geometry.compute(foldWidth, foldHeight, folds, 0.5f,
+                    isHorizontal, factor, exactQuads, exactMatrices);
+            assertEquals(message, isExactlyVisible, isVisible);
+            if (isVisible) {
+                assertArrayEquals(message, exactQuads, quads, 0);
+                assertArrayEquals(message, exactMatrices, matrices, 0);
+            }
+        }
+    }
+
+    @Test
+    public void noWidthIsNotVisible() {
+        FoldKeyframes keyframes = new FoldKeyframes(KEYFRAMES, 1080, 1920, 4, 0, true);
+        float[] quads = new float[4 * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[4 * FoldGeometry.MATRIX_SIZE];
+        assertFalse(keyframes.compute(new FoldGeometry(), 0, 1920, 0.0005f,
+                quads, matrices, new float[2]));
+    }
+
+}
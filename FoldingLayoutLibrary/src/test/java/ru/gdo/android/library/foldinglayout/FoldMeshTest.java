@@ -0,0 +1,60 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Every column of the mesh is placed with the segment of the content it
+ * shows, including sizes that do not split evenly into the folds.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldMeshTest {
+
+    /**
+     * Size along the folding axis and number of folds.
+     */
+    private static final int[][] CASES = {
+            {1080, 4}, {1081, 4}, {1080, 7}, {1794, 4}, {1005, 10}, {333, 8}, {10, 4}, {3, 4}
+    };
+
+    @Test
+    public void columnsLieInTheirSegment() {
+        for (int[] test : CASES) {
+            assertColumns(test[0], test[1]);
+        }
+    }
+
+    private static void assertColumns(int length, int folds) {
+        int[] strips = new int[folds * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(length, 1, folds, true, strips);
+        int[] bounds = new int[folds + 1];
+        for (int x = 0; x < folds; x++) {
+            bounds[x] = strips[x * FoldGeometry.STRIP_SIZE];
+        }
+        bounds[folds] = length;
+
+        int columns = folds * FoldMesh.SUBDIVISIONS;
+        int[] columnFolds = new int[columns + 1];
+        FoldMesh.locateColumns(bounds, folds, columns, columnFolds);
+
+        String message = length + " px, " + folds + " folds";
+        assertEquals(message, 0, columnFolds[0]);
+        for (int c = 0; c <= columns; c++) {
+            int fold = columnFolds[c];
+            float position = c * (float) length / columns;
+            assertTrue(message + ", column " + c, bounds[fold] <= position);
+            assertTrue(message + ", column " + c, position <= bounds[fold + 1]);
+            assertTrue(message + ", column " + c, bounds[fold] < bounds[fold + 1]);
+            if (c > 0) {
+                assertTrue(message + ", column " + c, columnFolds[c - 1] <= fold);
+            }
+        }
+    }
+
+}
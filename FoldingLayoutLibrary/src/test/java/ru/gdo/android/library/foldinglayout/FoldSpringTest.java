@@ -0,0 +1,195 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The closed form motion of FoldSpring, checked against a numerical
+ * integration of the spring for every kind of damping.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class FoldSpringTest {
+
+    private static final float FRAME = 1 / 60f;
+    private static final int MAX_FRAMES = 600;
+
+    @Test
+    public void restsOnlyWhenCloseAndSlow() {
+        FoldSpring spring = new FoldSpring();
+        spring.setTarget(1);
+
+        spring.setState(0.9995f, 0);
+        assertTrue(spring.isAtRest());
+
+        spring.setState(0.9995f, 0.5f);
+        assertFalse(spring.isAtRest());
+
+        spring.setState(0.9f, 0);
+        assertFalse(spring.isAtRest());
+
+        spring.setRestThreshold(0.2f);
+        assertTrue(spring.isAtRest());
+    }
+
+    @Test
+    public void settlesOnTarget() {
+        FoldSpring spring = new FoldSpring();
+        spring.setState(0, 0);
+        spring.setTarget(1);
+        int frames = 0;
+        while (!spring.isAtRest()) {
+            spring.step(FRAME);
+            assertTrue(++frames < MAX_FRAMES);
+        }
+        assertEquals(1, spring.getValue(), FoldSpring.DEFAULT_REST_THRESHOLD);
+
+        spring.snapToTarget();
+        assertEquals(1, spring.getValue(), 0);
+        assertEquals(0, spring.getVelocity(), 0);
+    }
+
+    @Test
+    public void retargetKeepsValueAndVelocity() {
+        FoldSpring spring = new FoldSpring();
+        spring.setState(0, 0);
+        spring.setTarget(1);
+        for (int i = 0; i < 10; i++) {
+            spring.step(FRAME);
+        }
+        float value = spring.getValue();
+        float velocity = spring.getVelocity();
+        assertTrue(velocity > 0);
+
+        spring.setTarget(0);
+        assertEquals(value, spring.getValue(), 0);
+        assertEquals(velocity, spring.getVelocity(), 0);
+
+        // it keeps moving on for a moment and turns around without a jump
+        double[] expected = integrate(FoldSpring.DEFAULT_STIFFNESS, FoldSpring.DEFAULT_DAMPING_RATIO,
+                value, velocity, 0, FRAME);
+        spring.step(FRAME);
+        assertEquals(expected[0], spring.getValue(), 1e-5);
+        assertEquals(expected[1], spring.getVelocity(), 1e-4);
+        assertTrue(spring.getValue() > value);
+    }
+
+    @Test
+    public void underdampedMatchesIntegration() {
+        assertMatchesIntegration(0.3f);
+    }
+
+    @Test
+    public void criticallyDampedMatchesIntegration() {
+        assertMatchesIntegration(1);
+    }
+
+    @Test
+    public void overdampedMatchesIntegration() {
+        assertMatchesIntegration(2.5f);
+    }
+
+    @Test
+    public void onlyUnderdampedOvershoots() {
+        assertTrue(maxValue(0.3f) > 1.05f);
+        assertTrue(maxValue(1) <= 1);
+        assertTrue(maxValue(2.5f) <= 1);
+    }
+
+    @Test
+    public void longFrameEqualsShortFrames() {
+        float[] ratios = {0.3f, 1, 2.5f};
+        for (float ratio : ratios) {
+            FoldSpring once = new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, ratio);
+            FoldSpring often = new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, ratio);
+            once.setState(0, 2);
+            once.setTarget(1);
+            often.setState(0, 2);
+            often.setTarget(1);
+
+            once.step(0.2f);
+            for (int i = 0; i < 20; i++) {
+                often.step(0.01f);
+            }
+            assertEquals(once.getValue(), often.getValue(), 1e-4);
+            assertEquals(once.getVelocity(), often.getVelocity(), 1e-3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsStiffnessOfZero() {
+        new FoldSpring(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeDamping() {
+        new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, -0.1f);
+    }
+
+    private static void assertMatchesIntegration(float dampingRatio) {
+        FoldSpring spring = new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, dampingRatio);
+        spring.setState(0, -1);
+        spring.setTarget(1);
+
+        double value = 0;
+        double velocity = -1;
+        for (int frame = 0; frame < 60; frame++) {
+            double[] expected = integrate(FoldSpring.DEFAULT_STIFFNESS, dampingRatio,
+                    value, velocity, 1, FRAME);
+            value = expected[0];
+            velocity = expected[1];
+            spring.step(FRAME);
+            assertEquals("frame " + frame, value, spring.getValue(), 1e-4);
+            assertEquals("frame " + frame, velocity, spring.getVelocity(), 1e-3);
+        }
+    }
+
+    private static float maxValue(float dampingRatio) {
+        FoldSpring spring = new FoldSpring(FoldSpring.DEFAULT_STIFFNESS, dampingRatio);
+        spring.setState(0, 0);
+        spring.setTarget(1);
+        float max = 0;
+        for (int frame = 0; frame < MAX_FRAMES; frame++) {
+            spring.step(FRAME);
+            max = Math.max(max, spring.getValue());
+        }
+        return max;
+    }
+
+    /**
+     * Integrates x'' = -k (x - target) - 2 zeta sqrt(k) x' with fourth order
+     * Runge-Kutta in small steps.
+     *
+     * @return the value and the velocity after the given time.
+     */
+    private static double[] integrate(double stiffness, double dampingRatio, double value,
+                                      double velocity, double target, double seconds) {
+        int steps = 1000;
+        double dt = seconds / steps;
+        double damping = 2 * dampingRatio * Math.sqrt(stiffness);
+        double x = value;
+        double v = velocity;
+        for (int i = 0; i < steps; i++) {
+            double a1 = -stiffness * (x - target) - damping * v;
+            double x2 = x + v * dt / 2;
+            double v2 = v + a1 * dt / 2;
+            double a2 = -stiffness * (x2 - target) - damping * v2;
+            double x3 = x + v2 * dt / 2;
+            double v3 = v + a2 * dt / 2;
+            double a3 = -stiffness * (x3 - target) - damping * v3;
+            double x4 = x + v3 * dt;
+            double v4 = v + a3 * dt;
+            double a4 = -stiffness * (x4 - target) - damping * v4;
+            x += dt / 6 * (v + 2 * v2 + 2 * v3 + v4);
+            v += dt / 6 * (a1 + 2 * a2 + 2 * a3 + a4);
+        }
+        return new double[]{x, v};
+    }
+
+}
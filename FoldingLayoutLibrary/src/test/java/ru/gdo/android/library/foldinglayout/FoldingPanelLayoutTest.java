@@ -0,0 +1,114 @@
+package ru.gdo.android.library.foldinglayout;
+
+import android.app.Activity;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Touch handling of the panel, with the fold animations stepped by a
+ * FoldFrameStepper.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FoldingPanelLayoutTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 800;
+    private static final int MAX_FRAMES = 300;
+
+    private FoldFrameStepper mStepper;
+    private FoldingPanelLayout mPanel;
+
+    @Before
+    public void setUp() {
+        mStepper = new FoldFrameStepper();
+        mStepper.install();
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mPanel = new FoldingPanelLayout(activity);
+        mPanel.setDragEnabled(true);
+        mPanel.addView(new View(activity));
+        mPanel.addView(new View(activity));
+        activity.setContentView(mPanel);
+
+        mPanel.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mPanel.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        mStepper.uninstall();
+    }
+
+    @Test
+    public void tapDuringFoldSettlesPanel() {
+        mPanel.performClick();
+        for (int i = 0; i < 10; i++) {
+            mStepper.step();
+        }
+        float caught = getFoldFactor();
+        assertTrue(caught > 0 && caught < 1);
+
+        // the finger lifts without leaving the touch slop
+        touch(MotionEvent.ACTION_DOWN);
+        touch(MotionEvent.ACTION_UP);
+        assertTrue(mStepper.isAnimating());
+
+        mStepper.runUntilIdle(MAX_FRAMES);
+        float factor = getFoldFactor();
+        assertTrue(factor == 0 || factor == 1);
+        assertFalse(mStepper.isAnimating());
+        assertTrue(mPanel.hasOnClickListeners());
+    }
+
+    @Test
+    public void springOvershootDoesNotEndFold() {
+        mPanel.setSpringAnimationEnabled(true);
+        mPanel.setTransformAnimationEnabled(true);
+        mPanel.getFoldSpring().setDampingRatio(0.3f);
+        mPanel.performClick();
+
+        boolean overshot = false;
+        while (mStepper.isAnimating()) {
+            mStepper.step();
+            float factor = getFoldFactor();
+            if (mStepper.isAnimating()) {
+                assertTrue(factor > 0 && factor < 1);
+                overshot |= mPanel.getFoldSpring().getValue() > 1;
+            }
+            assertTrue(mStepper.getFrames().size() < MAX_FRAMES);
+        }
+        assertTrue(overshot);
+        assertEquals(1, getFoldFactor(), 0);
+    }
+
+    private float getFoldFactor() {
+        return mPanel.mFoldingNavigationLayout.getFoldFactor();
+    }
+
+    private void touch(int action) {
+        long time = mStepper.getTime() / 1000000L;
+        MotionEvent event = MotionEvent.obtain(time, time, action, WIDTH / 2, HEIGHT / 2, 0);
+        mPanel.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+}
@@ -0,0 +1,98 @@
+package ru.gdo.android.library.foldinglayout;
+
+/**
+ * Reference strategy for the matrix tests and benchmarks. It finds the
+ * perspective matrix of four point pairs by Gaussian elimination of the
+ * general 8x8 system, without using anything known about the shape of a
+ * fold.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class PerspectiveSolver {
+
+    private static final int UNKNOWNS = 8;
+
+    private final double[][] mSystem = new double[UNKNOWNS][UNKNOWNS + 1];
+    private final float[] mSrc = new float[UNKNOWNS];
+
+    /**
+     * Maps the rectangle (0, 0, width, height) onto the quad at quadOffset,
+     * with the corners in the order used by FoldGeometry.
+     */
+    public void solve(float width, float height, float[] quad, int quadOffset,
+                      float[] matrix, int matrixOffset) {
+        mSrc[0] = 0;
+        mSrc[1] = 0;
+        mSrc[2] = 0;
+        mSrc[3] = height;
+        mSrc[4] = width;
+        mSrc[5] = 0;
+        mSrc[6] = width;
+        mSrc[7] = height;
+
+        for (int i = 0; i < 4; i++) {
+            double x = mSrc[i * 2];
+            double y = mSrc[i * 2 + 1];
+            double u = quad[quadOffset + i * 2];
+            double v = quad[quadOffset + i * 2 + 1];
+
+            double[] row = mSystem[i * 2];
+            row[0] = x;
+            row[1] = y;
+            row[2] = 1;
+            row[3] = 0;
+            row[4] = 0;
+            row[5] = 0;
+            row[6] = -x * u;
+            row[7] = -y * u;
+            row[8] = u;
+
+            row = mSystem[i * 2 + 1];
+            row[0] = 0;
+            row[1] = 0;
+            row[2] = 0;
+            row[3] = x;
+            row[4] = y;
+            row[5] = 1;
+            row[6] = -x * v;
+            row[7] = -y * v;
+            row[8] = v;
+        }
+
+        for (int column = 0; column < UNKNOWNS; column++) {
+            int pivot = column;
+            for (int r = column + 1; r < UNKNOWNS; r++) {
+                if (Math.abs(mSystem[r][column]) > Math.abs(mSystem[pivot][column])) {
+                    pivot = r;
+                }
+            }
+            double[] swap = mSystem[column];
+            mSystem[column] = mSystem[pivot];
+            mSystem[pivot] = swap;
+
+            double divisor = mSystem[column][column];
+            if (divisor == 0) {
+                continue;
+            }
+            for (int r = 0; r < UNKNOWNS; r++) {
+                if (r == column) {
+                    continue;
+                }
+                double factor = mSystem[r][column] / divisor;
+                for (int c = column; c <= UNKNOWNS; c++) {
+                    mSystem[r][c] -= factor * mSystem[column][c];
+                }
+            }
+        }
+
+        for (int i = 0; i < UNKNOWNS; i++) {
+            double divisor = mSystem[i][i];
+            matrix[matrixOffset + i] = divisor == 0 ? 0 : (float) (mSystem[i][UNKNOWNS] / divisor);
+        }
+        matrix[matrixOffset + 8] = 1;
+    }
+
+}
@@ -0,0 +1,63 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Layouts with the same configuration share one instance, which goes away
+ * with the last reference to it.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class SharedFoldResourcesTest {
+
+    @Test
+    public void sameConfigurationIsShared() {
+        int count = SharedFoldResources.getCount();
+        SharedFoldResources first = SharedFoldResources.acquire(1080, 1920, 4, 0.5f, true, 64);
+        SharedFoldResources second = SharedFoldResources.acquire(1080, 1920, 4, 0.5f, true, 64);
+        assertSame(first, second);
+        assertEquals(count + 1, SharedFoldResources.getCount());
+
+        first.release();
+        assertEquals(count + 1, SharedFoldResources.getCount());
+        second.release();
+        assertEquals(count, SharedFoldResources.getCount());
+    }
+
+    @Test
+    public void otherConfigurationIsNotShared() {
+        SharedFoldResources resources = SharedFoldResources.acquire(1080, 1920, 4, 0.5f, true, 64);
+        SharedFoldResources[] others = {
+                SharedFoldResources.acquire(1080, 1794, 4, 0.5f, true, 64),
+                SharedFoldResources.acquire(1080, 1920, 3, 0.5f, true, 64),
+                SharedFoldResources.acquire(1080, 1920, 4, 0, true, 64),
+                SharedFoldResources.acquire(1080, 1920, 4, 0.5f, false, 64),
+                SharedFoldResources.acquire(1080, 1920, 4, 0.5f, true, 0),
+        };
+        for (SharedFoldResources other : others) {
+            assertNotSame(resources, other);
+            other.release();
+        }
+        resources.release();
+    }
+
+    @Test
+    public void stripsAreCutFromTheReferenceSize() {
+        SharedFoldResources resources = SharedFoldResources.acquire(1081, 517, 4, 0, false, 0);
+        int[] strips = new int[4 * FoldGeometry.STRIP_SIZE];
+        FoldGeometry.segment(1081, 517, 4, false, strips);
+        assertArrayEquals(strips, resources.getStrips());
+        assertNull(resources.getKeyframes());
+        resources.release();
+    }
+
+}
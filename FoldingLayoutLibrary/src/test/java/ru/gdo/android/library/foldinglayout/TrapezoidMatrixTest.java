@@ -0,0 +1,86 @@
+package ru.gdo.android.library.foldinglayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the closed form FoldGeometry uses for the matrix of a fold with
+ * the general solve of the 8x8 perspective system, for the folds of many
+ * sizes, fold counts, anchors and fold factors.
+ *
+ * @author Danil Gudkov <d_n_l@mail.ru>
+ * @copyrights, 2015
+ * @since 15.10.26.
+ */
+
+public class TrapezoidMatrixTest {
+
+    private static final int[][] SIZES = {{100, 100}, {333, 517}, {1080, 1920}, {1920, 1080}};
+    private static final int[] FOLDS = {1, 2, 3, 4, 6, 7, 8, 16};
+    private static final float[] ANCHORS = {0, 0.5f, 1};
+    private static final int FACTOR_STEPS = 20;
+
+    /**
+     * Points of a fold are compared on a grid of this many intervals along
+     * both sides.
+     */
+    private static final int GRID = 4;
+
+    private static final float PIXEL_TOLERANCE = 0.5f;
+
+    private final FoldGeometry mGeometry = new FoldGeometry();
+    private final PerspectiveSolver mSolver = new PerspectiveSolver();
+
+    @Test
+    public void matchesGeneralSolve() {
+        int compared = 0;
+        for (int[] size : SIZES) {
+            for (int folds : FOLDS) {
+                for (float anchor : ANCHORS) {
+                    for (int step = 1; step < FACTOR_STEPS; step++) {
+                        float factor = step / (float) FACTOR_STEPS;
+                        compared += compare(size[0], size[1], folds, anchor, true, factor);
+                        compared += compare(size[0], size[1], folds, anchor, false, factor);
+                    }
+                }
+            }
+        }
+        assertTrue(compared > 0);
+    }
+
+    /**
+     * @return the number of folds compared.
+     */
+    private int compare(int width, int height, int folds, float anchor,
+                        boolean isHorizontal, float factor) {
+        float[] quads = new float[folds * FoldGeometry.QUAD_SIZE];
+        float[] matrices = new float[folds * FoldGeometry.MATRIX_SIZE];
+        float[] reference = new float[FoldGeometry.MATRIX_SIZE];
+        if (!mGeometry.compute(width, height, folds, anchor, isHorizontal, factor, quads, matrices)) {
+            return 0;
+        }
+
+        float drawWidth = mGeometry.getFoldDrawWidth();
+        float drawHeight = mGeometry.getFoldDrawHeight();
+        String config = width + "x" + height + " folds " + folds + " anchor " + anchor
+                + (isHorizontal ? " horizontal" : " vertical") + " factor " + factor;
+
+        for (int x = 0; x < folds; x++) {
+            mSolver.solve(drawWidth, drawHeight, quads, x * FoldGeometry.QUAD_SIZE, reference, 0);
+            for (int i = 0; i <= GRID; i++) {
+                for (int j = 0; j <= GRID; j++) {
+                    float px = drawWidth * i / GRID;
+                    float py = drawHeight * j / GRID;
+                    float[] expected = FoldGeometryTest.map(reference, 0, px, py);
+                    float[] actual = FoldGeometryTest.map(matrices, x * FoldGeometry.MATRIX_SIZE, px, py);
+                    assertEquals(config + " fold " + x, expected[0], actual[0], PIXEL_TOLERANCE);
+                    assertEquals(config + " fold " + x, expected[1], actual[1], PIXEL_TOLERANCE);
+                }
+            }
+        }
+        return folds;
+    }
+
+}